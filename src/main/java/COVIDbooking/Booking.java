@@ -1,14 +1,20 @@
 package COVIDbooking;
 
 import COVIDtests.TestStatus;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import utils.Json;
 
 /**
  * Abstract class holds COVID booking details
  */
 public abstract class Booking {
 
+    /**
+     * additionalInfo key of the booking's status
+     */
+    private static final String statusKey = "status";
+
     /**
      * booking's unique ID string
      */
@@ -35,18 +41,17 @@ public abstract class Booking {
      */
     private String updatedAt;
     /**
-     * booking's additional information
+     * booking's additional information, other than the fields held as typed fields
      */
     private ObjectNode additionalInfo;
     /**
-     * ObjectMapper used for reading and writing JSON
+     * status of the booking's test, null if not recorded
      */
-    private ObjectMapper mapper;
-
-    private String status;
+    private TestStatus status;
 
     /**
-     * Constructor for booking creation through JSON data
+     * Constructor for booking creation through JSON data.
+     * The booking takes over the node's subtrees rather than copying them, so the node should not be reused.
      * @param bookingNode ObjectNode, JSON data of a booking
      */
     public Booking(ObjectNode bookingNode) {
@@ -60,9 +65,11 @@ public abstract class Booking {
         }
         this.startTime = bookingNode.get("startTime").asText();
         this.notes = bookingNode.get("notes").asText();
-        this.additionalInfo = bookingNode.get("additionalInfo").deepCopy();
         this.updatedAt = bookingNode.get("updatedAt").asText();
-        this.mapper = new ObjectMapper();
+
+        // typed fields are taken out of additionalInfo by the concrete class' constructor, once its fields exist
+        JsonNode additionalInfo = bookingNode.get("additionalInfo");
+        this.additionalInfo = additionalInfo instanceof ObjectNode ? (ObjectNode) additionalInfo : Json.createObjectNode();
     }
 
     /**
@@ -73,10 +80,9 @@ public abstract class Booking {
     public Booking(String customerId, String startTime) {
         this.customerId = customerId;
         this.startTime = startTime;
-        this.mapper = new ObjectMapper();
         this.updatedAt = startTime;
-        this.additionalInfo = this.mapper.createObjectNode();
-        this.status = TestStatus.INITIATED.toString();
+        this.additionalInfo = Json.createObjectNode();
+        this.status = TestStatus.INITIATED;
     }
 
     /**
@@ -87,6 +93,14 @@ public abstract class Booking {
         return this.id;
     }
 
+    /**
+     * Sets booking's unique id, once it has been assigned by the web service
+     * @param id booking's unique id string
+     */
+    void setId(String id) {
+        this.id = id;
+    }
+
     /**
      * Returns booking's customer id
      * @return customer id
@@ -120,7 +134,37 @@ public abstract class Booking {
     }
 
     /**
-     * Returns booking's additional information
+     * Returns the status of the booking's test
+     * @return status, null if not recorded
+     */
+    public TestStatus getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Sets the status of the booking's test
+     * @param status the test's new status
+     */
+    public void setStatus(TestStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns whether the booking is active, i.e. its test has not yet been administered
+     * @return true if the status is INITIATED or not recorded, false otherwise
+     */
+    public boolean isActive() {
+        if (this.status == null) {
+            // a status which is not a TestStatus is kept in additionalInfo, and means the booking is not active
+            return !this.additionalInfo.has(statusKey);
+        }
+        return this.status == TestStatus.INITIATED;
+    }
+
+    /**
+     * Returns booking's additional information. Fields held as typed fields, such as status, are not included.
+     * The node is live, so changes to it apply to the booking. Stored bookings are shared between sessions, so
+     * should only be changed through a copy, which is then saved through the BookingFacade.
      *
      * @return additionalInfo booking's additional information
      */
@@ -141,37 +185,78 @@ public abstract class Booking {
      * @return booking's JSON data represented as a string
      */
     public String toJSON() {
-        ObjectNode node = this.mapper.createObjectNode();
+        ObjectNode node = Json.createObjectNode();
         node.put("customerId", getCustomerId());
         node.put("testingSiteId", getTestingSiteId());
         node.put("startTime", getStartTime());
         node.put("notes", getNotes());
         node.put("updatedAt", getUpdatedAT());
-        node.set("additionalInfo", this.additionalInfo.deepCopy() );
-        return node.toString();
+
+        // the typed fields are only turned back into JSON here
+        ObjectNode additionalInfo = this.additionalInfo.deepCopy();
+        writeTypedFields(additionalInfo);
+        node.set("additionalInfo", additionalInfo);
+        return Json.toJsonString(node);
+    }
+
+    /**
+     * Converts the booking to JSON in the form the API returns it, so that it can be recreated with the JSON
+     * constructor
+     * @return booking's JSON data
+     */
+    public ObjectNode toApiJson() {
+        ObjectNode node = Json.createObjectNode();
+        node.put("id", getId());
+        node.putObject("customer").put("id", getCustomerId());
+
+        if (getTestingSiteId() != null) {
+            node.putObject("testingSite").put("id", getTestingSiteId());
+        } else {
+            node.putNull("testingSite");
+        }
+
+        node.put("startTime", getStartTime());
+        node.put("notes", getNotes());
+        node.put("updatedAt", getUpdatedAT());
+
+        ObjectNode additionalInfo = this.additionalInfo.deepCopy();
+        writeTypedFields(additionalInfo);
+        node.set("additionalInfo", additionalInfo);
+        return node;
     }
 
     /**
-     * Function sets booking's additional information
+     * Returns a copy of the booking, which can be edited without affecting the stored booking until it is saved
+     * through the BookingFacade
+     * @return a new booking with the same details
+     */
+    public Booking copy() {
+        return new ConcreteBookingFactory().getBooking(toApiJson());
+    }
+
+    /**
+     * Function sets booking's additional information. Any typed fields it holds replace the booking's values.
      * @param additionalInfo booking's additional information
      */
     public void setAdditionalInfo(ObjectNode additionalInfo) {
         this.additionalInfo = additionalInfo.deepCopy();
+        absorbTypedFields(this.additionalInfo);
     }
 
     /**
-     * Function returns a field value from Booking's additional info
+     * Function returns a field value from Booking's additional info, including typed fields
      * @param field attribute in additional info
      * @return value of selected field, null if n/a
      */
     public String getAdditionalInfoField(String field) {
-        try {
-            this.getAdditionalInfo().get(field).asText();
-        }
-        catch (Exception e) {
-           return null;
+        String typedValue = getTypedField(field);
+
+        if (typedValue != null) {
+            return typedValue;
         }
-        return this.getAdditionalInfo().get(field).asText();
+
+        JsonNode value = this.additionalInfo.get(field);
+        return value == null ? null : value.asText();
     }
 
     /**
@@ -206,10 +291,79 @@ public abstract class Booking {
         this.startTime = startTime;
     }
 
+    /**
+     * Function sets a field in Booking's additional info, updating the typed field if there is one
+     * @param field attribute in additional info
+     * @param value new value of the field
+     */
     public void setAdditionalInfoField(String field, String value) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put(field, value);
-        //TODO will put override here ^^
-        this.setAdditionalInfo(additionalInfo);
+        if (setTypedField(field, value)) {
+            this.additionalInfo.remove(field);
+        } else {
+            this.additionalInfo.put(field, value);
+        }
+    }
+
+    /**
+     * Moves the typed fields held in an additionalInfo node into the booking's fields, removing them from the node.
+     * Fields the node does not hold are left unchanged, and values which cannot be understood are left in the node.
+     * Subclasses add their own fields, and must call this method from their JSON constructor.
+     * @param additionalInfo the booking's additionalInfo
+     */
+    protected void absorbTypedFields(ObjectNode additionalInfo) {
+        JsonNode statusNode = additionalInfo.get(statusKey);
+
+        if (statusNode == null) {
+            return;
+        } else if (statusNode.isNull()) {
+            this.status = null;
+            additionalInfo.remove(statusKey);
+        } else {
+            this.status = TestStatus.fromString(statusNode.asText());
+
+            if (this.status != null) {
+                additionalInfo.remove(statusKey);
+            }
+        }
+    }
+
+    /**
+     * Writes the typed fields into an additionalInfo node. Subclasses add their own fields.
+     * @param additionalInfo the node being serialized
+     */
+    protected void writeTypedFields(ObjectNode additionalInfo) {
+        if (this.status != null) {
+            additionalInfo.put(statusKey, this.status.toString());
+        }
+    }
+
+    /**
+     * Reads a typed field as it would appear in additionalInfo. Subclasses add their own fields.
+     * @param field attribute in additional info
+     * @return the field's value, null if it is not a typed field or has no value
+     */
+    protected String getTypedField(String field) {
+        if (field.equals(statusKey) && this.status != null) {
+            return this.status.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Sets a typed field from its additionalInfo value. Subclasses add their own fields.
+     * @param field attribute in additional info
+     * @param value new value of the field
+     * @return true if the field is typed and the value was understood, false if it belongs in additionalInfo
+     */
+    protected boolean setTypedField(String field, String value) {
+        if (field.equals(statusKey)) {
+            TestStatus newStatus = TestStatus.fromString(value);
+
+            if (newStatus != null || value == null) {
+                this.status = newStatus;
+                return true;
+            }
+        }
+        return false;
     }
 }
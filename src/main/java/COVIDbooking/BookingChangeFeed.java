@@ -0,0 +1,219 @@
+package COVIDbooking;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Singleton in-process feed of changes to bookings, which sessions subscribe to in order to wait for a booking to
+ * change rather than repeatedly fetching it from the API.
+ *
+ * The BookingCollection publishes every booking it stores, whether it was changed locally, by the background sync
+ * with the API, or by a single booking being fetched. Publishing a booking which nobody is waiting on costs a single
+ * map lookup.
+ */
+public class BookingChangeFeed {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static volatile BookingChangeFeed instance;
+
+    /**
+     * Change state of each booking with at least one subscriber, indexed by booking ID.
+     */
+    private final ConcurrentHashMap<String, BookingChanges> subscribed;
+
+    /**
+     * Private constructor.
+     */
+    private BookingChangeFeed() {
+        this.subscribed = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of BookingChangeFeed.
+     */
+    public static BookingChangeFeed getInstance() {
+        BookingChangeFeed result = instance;
+        if (result == null) {
+            synchronized (BookingChangeFeed.class) {
+                result = instance;
+                if (result == null) {
+                    result = new BookingChangeFeed();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wakes any session waiting on a booking.
+     *
+     * @param booking The booking which has been stored.
+     */
+    void publish(Booking booking) {
+        String bookingId = booking.getId();
+
+        if (bookingId == null) {
+            return;
+        }
+
+        BookingChanges changes = this.subscribed.get(bookingId);
+
+        if (changes != null) {
+            changes.signal();
+        }
+    }
+
+    /**
+     * Subscribes to changes to a booking. The subscription must be closed once it is no longer needed.
+     *
+     * @param bookingId The booking's unique ID.
+     * @return The subscription.
+     */
+    public Subscription subscribe(String bookingId) {
+        BookingChanges changes = this.subscribed.compute(bookingId, (id, existing) -> {
+            BookingChanges subscribedChanges = existing == null ? new BookingChanges() : existing;
+            subscribedChanges.subscriberCount++;
+            return subscribedChanges;
+        });
+
+        return new Subscription(bookingId, changes);
+    }
+
+    /**
+     * Drops a subscription, forgetting the booking once nobody is subscribed to it.
+     *
+     * @param bookingId The booking's unique ID.
+     */
+    private void unsubscribe(String bookingId) {
+        this.subscribed.computeIfPresent(bookingId, (id, changes) -> --changes.subscriberCount == 0 ? null : changes);
+    }
+
+    /**
+     * Change state of a single booking.
+     */
+    private static class BookingChanges {
+
+        /**
+         * Held while the version is read or changed.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Signalled whenever the version changes.
+         */
+        private final Condition changed = this.lock.newCondition();
+
+        /**
+         * Number of times the booking has been published since it was first subscribed to.
+         */
+        private long version;
+
+        /**
+         * Number of open subscriptions, only changed inside the feed's map operations.
+         */
+        private int subscriberCount;
+
+        /**
+         * Records a change, and wakes every waiting subscriber.
+         */
+        private void signal() {
+            this.lock.lock();
+            try {
+                this.version++;
+                this.changed.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A session's subscription to changes to a single booking.
+     */
+    public class Subscription implements AutoCloseable {
+
+        /**
+         * The booking's unique ID.
+         */
+        private final String bookingId;
+
+        /**
+         * The booking's change state.
+         */
+        private final BookingChanges changes;
+
+        /**
+         * The version of the booking last seen by this subscription.
+         */
+        private long seenVersion;
+
+        /**
+         * Whether the subscription has been closed.
+         */
+        private boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param bookingId The booking's unique ID.
+         * @param changes The booking's change state.
+         */
+        private Subscription(String bookingId, BookingChanges changes) {
+            this.bookingId = bookingId;
+            this.changes = changes;
+
+            changes.lock.lock();
+            try {
+                this.seenVersion = changes.version;
+            } finally {
+                changes.lock.unlock();
+            }
+        }
+
+        /**
+         * Waits until the booking changes, or the timeout passes. Changes made since the last call are returned
+         * straight away.
+         *
+         * @param timeout The longest time to wait.
+         * @param unit The unit of timeout.
+         * @return true if the booking changed, false if the timeout passed first.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        public boolean awaitChange(long timeout, TimeUnit unit) throws InterruptedException {
+            long remainingNanos = unit.toNanos(timeout);
+
+            this.changes.lock.lock();
+            try {
+                while (this.changes.version == this.seenVersion) {
+                    if (remainingNanos <= 0) {
+                        return false;
+                    }
+                    remainingNanos = this.changes.changed.awaitNanos(remainingNanos);
+                }
+
+                this.seenVersion = this.changes.version;
+                return true;
+            } finally {
+                this.changes.lock.unlock();
+            }
+        }
+
+        /**
+         * Ends the subscription.
+         */
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                unsubscribe(this.bookingId);
+            }
+        }
+    }
+}
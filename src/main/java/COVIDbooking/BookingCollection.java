@@ -1,21 +1,73 @@
 package COVIDbooking;
 
-import COVIDtests.TestStatus;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A class representing a collection of bookings.
+ * Bookings are indexed by ID, customer ID and each of their access codes (PIN, QR code and URL), so that lookups
+ * do not need to scan the whole collection.
+ * The collection is refreshed from the API in the background and shared between sessions, so the indexes are
+ * concurrent maps which lookups read without locking. Changes touch several indexes at once, so they are
+ * synchronized, and a lookup running alongside a change sees the booking either before or after it.
+ * The access codes of active bookings are registered with BookingTokens while they are stored, so that they are not
+ * issued again until the booking is deleted or its test has been administered.
  */
 public class BookingCollection {
+
+    /**
+     * Fields of a booking's additional info that are indexed. Lookups on these fields are case-insensitive.
+     */
+    private static final String[] indexedFields = {"PIN", "QRCode", "URL"};
+
     /**
-     * list of COVID test appointments
+     * all COVID test appointments, with the index keys each was stored under
      */
-    private ArrayList<Booking> bookings;
+    private final ConcurrentHashMap<Booking, IndexedKeys> bookings;
+
+    /**
+     * all COVID test appointments, keyed by the order they were added
+     */
+    private final ConcurrentSkipListMap<Long, Booking> bookingsInOrder;
+
+    /**
+     * bookings indexed by their unique ID
+     */
+    private final ConcurrentHashMap<String, Booking> bookingsById;
+
+    /**
+     * bookings indexed by the ID of the customer they are for
+     */
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Booking>> bookingsByCustomerId;
+
+    /**
+     * bookings indexed by each of the indexedFields, keyed by the field's lower case value
+     */
+    private final HashMap<String, ConcurrentHashMap<String, Booking>> bookingsByField;
+
+    /**
+     * order number given to the next booking added, only changed while synchronized
+     */
+    private long nextSequence;
 
     public BookingCollection() {
-        this.bookings = new ArrayList<>();
+        this.bookings = new ConcurrentHashMap<>();
+        this.bookingsInOrder = new ConcurrentSkipListMap<>();
+        this.bookingsById = new ConcurrentHashMap<>();
+        this.bookingsByCustomerId = new ConcurrentHashMap<>();
+        this.bookingsByField = new HashMap<>();
+
+        // the map of indexes is never changed after construction, so it may be read without locking
+        for (String field : indexedFields) {
+            this.bookingsByField.put(field, new ConcurrentHashMap<>());
+        }
     }
 
     /**
@@ -24,17 +76,169 @@ public class BookingCollection {
      * @param bookingNodes A list of ObjectNodes each containing information on a Booking object.
      */
     public BookingCollection(ObjectNode[] bookingNodes) {
-        this.bookings = new ArrayList<Booking>();
+        this();
 
         BookingFactory bookingFactory = new ConcreteBookingFactory();
 
         for (ObjectNode bookingNode : bookingNodes) {
-            bookings.add(bookingFactory.getBooking(bookingNode));
+            addBooking(bookingFactory.getBooking(bookingNode));
+        }
+    }
+
+    public synchronized void addBooking(Booking booking) {
+        IndexedKeys keys = new IndexedKeys(booking, this.nextSequence++);
+
+        // claim the booking's access codes before any it held previously are released, so they cannot be reissued
+        if (keys.holdsTokens) {
+            registerTokens(keys);
+        }
+
+        // re-adding a booking which has been modified in place must drop the keys it was stored under previously
+        removeBooking(booking);
+
+        // bookings which already exist take their slot even if it is full
+        if (keys.hasSlot()) {
+            TimeSlotEngine.getInstance().book(keys.testingSiteId, keys.startTime);
+        }
+
+        index(booking, keys);
+    }
+
+    /**
+     * Reserves a new booking's time slot at its testing site, if the slot has room. Checking and taking the slot is
+     * atomic, so two sessions cannot both take the last place in a slot. The booking is not stored until it is added
+     * with addReservedBooking, once the API has given it an ID; if that never happens, the reservation must be
+     * cancelled with cancelReservation.
+     * @param booking the new booking
+     * @return true if the slot was reserved, false if it is full, in which case the booking's access codes are released
+     */
+    public boolean reserveSlot(Booking booking) {
+        IndexedKeys keys = new IndexedKeys(booking, 0);
+
+        if (keys.hasSlot() && !TimeSlotEngine.getInstance().tryBook(keys.testingSiteId, keys.startTime)) {
+            // the booking will not be used, so neither will the access codes reserved for it
+            releaseTokens(keys);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the reservation of a new booking which will not be added, releasing its time slot and access codes.
+     * @param booking the new booking, which must have been reserved with reserveSlot and not added
+     */
+    public void cancelReservation(Booking booking) {
+        IndexedKeys keys = new IndexedKeys(booking, 0);
+
+        if (keys.hasSlot()) {
+            TimeSlotEngine.getInstance().release(keys.testingSiteId, keys.startTime);
+        }
+        releaseTokens(keys);
+    }
+
+    /**
+     * Gives a new booking the ID the API assigned it and stores it, in a single step, so that lookups never see it
+     * without its ID. The booking keeps the time slot reserved for it with reserveSlot.
+     * The background sync may already have stored the API's copy of the booking, between the API assigning the ID
+     * and this call. That copy is replaced, so the booking is stored once and its slot is only counted once.
+     * @param booking the new booking, which must have been reserved with reserveSlot
+     * @param id the booking's unique ID
+     */
+    public synchronized void addReservedBooking(Booking booking, String id) {
+        booking.setId(id);
+        IndexedKeys keys = new IndexedKeys(booking, this.nextSequence++);
+
+        // claim the booking's access codes before the synced copy's are released, so they cannot be reissued
+        if (keys.holdsTokens) {
+            registerTokens(keys);
         }
+
+        removeBooking(this.bookingsById.get(id));
+
+        index(booking, keys);
+    }
+
+    /**
+     * Replaces a stored booking with an edited copy of it, moving the booking to its new time slot if the slot has
+     * room. The booking's own place is taken into account, and the slot is checked and taken atomically, so
+     * concurrent edits cannot overbook it.
+     * @param booking the edited booking, with the ID of the booking it replaces
+     * @return true if the booking was stored, false if its new time slot is full, in which case nothing is changed
+     */
+    public synchronized boolean moveBooking(Booking booking) {
+        Booking oldBooking = this.bookingsById.get(booking.getId());
+        IndexedKeys oldKeys = oldBooking == null ? null : this.bookings.get(oldBooking);
+        boolean hadSlot = oldKeys != null && oldKeys.hasSlot();
+        IndexedKeys keys = new IndexedKeys(booking, this.nextSequence);
+        TimeSlotEngine timeSlotEngine = TimeSlotEngine.getInstance();
+
+        if (keys.hasSlot()) {
+            boolean booked = hadSlot
+                    ? timeSlotEngine.tryMove(oldKeys.testingSiteId, oldKeys.startTime,
+                            keys.testingSiteId, keys.startTime)
+                    : timeSlotEngine.tryBook(keys.testingSiteId, keys.startTime);
+
+            if (!booked) {
+                return false;
+            }
+        } else if (hadSlot) {
+            timeSlotEngine.release(oldKeys.testingSiteId, oldKeys.startTime);
+        }
+        this.nextSequence++;
+
+        // claim the booking's access codes before the old version's are released, so they cannot be reissued
+        if (keys.holdsTokens) {
+            registerTokens(keys);
+        }
+
+        // the old version's place has already been handed over to the booking
+        removeBooking(oldBooking, false);
+
+        index(booking, keys);
+        return true;
+    }
+
+    /**
+     * Stores a booking under each of its index keys.
+     * @param booking the booking
+     * @param keys the booking's index keys
+     */
+    private void index(Booking booking, IndexedKeys keys) {
+        index(booking, keys, null);
     }
 
-    public void addBooking(Booking booking) {
-        this.bookings.add(booking);
+    /**
+     * Stores a booking under each of its index keys, taking over the entries of the version it replaces.
+     * @param booking the booking
+     * @param keys the booking's index keys
+     * @param replacedBooking the stored version the booking replaces, which is removed afterwards, or null
+     */
+    private void index(Booking booking, IndexedKeys keys, Booking replacedBooking) {
+        this.bookings.put(booking, keys);
+        this.bookingsInOrder.put(keys.sequence, booking);
+
+        if (keys.id != null) {
+            this.bookingsById.put(keys.id, booking);
+        }
+
+        if (keys.customerId != null) {
+            this.bookingsByCustomerId.computeIfAbsent(keys.customerId, customerId -> new CopyOnWriteArrayList<>())
+                    .add(booking);
+        }
+
+        for (Map.Entry<String, String> fieldKey : keys.fieldKeys.entrySet()) {
+            ConcurrentHashMap<String, Booking> fieldIndex = this.bookingsByField.get(fieldKey.getKey());
+
+            // the codes of finished bookings may have been reissued, and must not hide the active booking using them
+            if (keys.holdsTokens) {
+                fieldIndex.put(fieldKey.getValue(), booking);
+            } else if (fieldIndex.putIfAbsent(fieldKey.getValue(), booking) != null && replacedBooking != null) {
+                fieldIndex.replace(fieldKey.getValue(), replacedBooking, booking);
+            }
+        }
+
+        // wake any session waiting for this booking to change
+        BookingChangeFeed.getInstance().publish(booking);
     }
 
     /**
@@ -43,12 +247,11 @@ public class BookingCollection {
      * @return return the booking associated with the PIN, null if it doesn't exist
      */
     public Booking getBookingByPin(String pin) {
-        Booking foundBooking = null;
+        Booking foundBooking = getIndexedBooking("PIN", pin);
 
-        for (Booking booking : this.bookings) {
-            if (Objects.equals(booking.getAdditionalInfoField("PIN"), pin)) {
-                foundBooking = booking;
-            }
+        // the PIN index is case-insensitive, but PIN lookups are exact
+        if (foundBooking != null && !Objects.equals(foundBooking.getAdditionalInfoField("PIN"), pin)) {
+            return null;
         }
         return foundBooking;
     }
@@ -59,14 +262,10 @@ public class BookingCollection {
      * @return booking associated with ID, null if it doesn't exist
      */
     public Booking getBookingById(String id) {
-        Booking foundBooking = null;
-
-        for (Booking booking : this.bookings) {
-            if (Objects.equals(booking.getId(), id)) {
-                foundBooking = booking;
-            }
+        if (id == null) {
+            return null;
         }
-        return foundBooking;
+        return this.bookingsById.get(id);
     }
 
     /**
@@ -77,20 +276,23 @@ public class BookingCollection {
     public ArrayList<Booking> getActiveBookingsByUserId(String userId) {
         ArrayList<Booking> userBookings = new ArrayList<Booking>();
 
-        for (Booking booking : this.bookings) {
-            if (Objects.equals(booking.getCustomerId(), userId)) {
-                if (Objects.equals(booking.getAdditionalInfoField("status"), TestStatus.INITIATED.toString())) {
-                    userBookings.add(booking);
-                }
-                else if (Objects.equals(booking.getAdditionalInfoField("status"), null)) {
-                    userBookings.add(booking);
-                }
+        for (Booking booking : getCustomerBookings(userId)) {
+            if (booking.isActive()) {
+                userBookings.add(booking);
             }
         }
 
         return userBookings;
     }
 
+    /**
+     * Function returns every booking in the collection, in the order they were added
+     * @return list of all bookings
+     */
+    public ArrayList<Booking> getAllBookings() {
+        return new ArrayList<>(this.bookingsInOrder.values());
+    }
+
     /**
      * Searches BookingCollection for a Booking that matches the given field and value pair
      * @param field field in Booking's additional info
@@ -98,27 +300,233 @@ public class BookingCollection {
      * @return booking that corresponds to field and value, null if it doesn't exist
      */
     public Booking getBookingByAdditionalInfoField(String field, String value) {
+        if (this.bookingsByField.containsKey(field)) {
+            return getIndexedBooking(field, value);
+        }
+
+        // fields which are not indexed fall back to a scan, keeping the most recently added match
         Booking foundBooking = null;
 
-        for (Booking booking : this.bookings) {
-            if (booking.getAdditionalInfoField(field) != null && booking.getAdditionalInfoField(field).equalsIgnoreCase(value)) {
+        for (Booking booking : this.bookingsInOrder.values()) {
+            String fieldValue = booking.getAdditionalInfoField(field);
+
+            if (fieldValue != null && fieldValue.equalsIgnoreCase(value)) {
                 foundBooking = booking;
             }
         }
         return foundBooking;
     }
 
-    public void updateBookingById(String bookingId, Booking booking) {
-        // delete the booking if it exists in the list
-        deleteBookingById(bookingId);
+    /**
+     * Replaces a stored booking with a new version of it, such as the API's latest copy, in a single step.
+     * The new version is stored before the old one is removed, so lookups always find one of them, and its time slot
+     * and access codes are taken before the old version's are released, so they are never free in between.
+     * Like addBooking, the new version takes its slot even if it is full.
+     * @param bookingId the ID of the booking to be replaced
+     * @param booking the new version of the booking
+     */
+    public synchronized void updateBookingById(String bookingId, Booking booking) {
+        Booking oldBooking = getBookingById(bookingId);
 
-        // add the new booking to the list
-        addBooking(booking);
+        // a booking which is not stored yet, or was modified in place, is simply added
+        if (oldBooking == null || oldBooking == booking) {
+            addBooking(booking);
+            return;
+        }
+
+        IndexedKeys keys = new IndexedKeys(booking, this.nextSequence++);
+
+        if (keys.holdsTokens) {
+            registerTokens(keys);
+        }
+
+        if (keys.hasSlot()) {
+            TimeSlotEngine.getInstance().book(keys.testingSiteId, keys.startTime);
+        }
+
+        index(booking, keys, oldBooking);
+        removeBooking(oldBooking);
     }
 
-    public boolean deleteBookingById(String id) {
+    public synchronized boolean deleteBookingById(String id) {
         Booking oldBooking = getBookingById(id);
 
-        return this.bookings.remove(oldBooking);
+        return removeBooking(oldBooking);
+    }
+
+    /**
+     * Gets the bookings for a customer.
+     * @param customerId customer's unique ID
+     * @return the customer's bookings, which must not be modified
+     */
+    private Iterable<Booking> getCustomerBookings(String customerId) {
+        if (customerId == null) {
+            return new ArrayList<>();
+        }
+
+        CopyOnWriteArrayList<Booking> customerBookings = this.bookingsByCustomerId.get(customerId);
+        return customerBookings == null ? new ArrayList<>() : customerBookings;
+    }
+
+    /**
+     * Looks up a booking in the index of one of the indexedFields.
+     * @param field one of the indexedFields
+     * @param value value of the field, matched case-insensitively
+     * @return booking that corresponds to field and value, null if it doesn't exist
+     */
+    private Booking getIndexedBooking(String field, String value) {
+        if (value == null) {
+            return null;
+        }
+        return this.bookingsByField.get(field).get(value.toLowerCase());
+    }
+
+    /**
+     * Removes a booking and all of its index entries from the collection.
+     * @param booking the booking to be removed
+     * @return true if the booking was in the collection, false otherwise
+     */
+    private boolean removeBooking(Booking booking) {
+        return removeBooking(booking, true);
+    }
+
+    /**
+     * Removes a booking and all of its index entries from the collection.
+     * @param booking the booking to be removed
+     * @param releaseSlot whether to release the booking's time slot, false if it has been handed over to a new version
+     * @return true if the booking was in the collection, false otherwise
+     */
+    private boolean removeBooking(Booking booking, boolean releaseSlot) {
+        if (booking == null) {
+            return false;
+        }
+
+        IndexedKeys keys = this.bookings.remove(booking);
+
+        if (keys == null) {
+            return false;
+        }
+
+        this.bookingsInOrder.remove(keys.sequence);
+
+        if (releaseSlot && keys.hasSlot()) {
+            TimeSlotEngine.getInstance().release(keys.testingSiteId, keys.startTime);
+        }
+
+        // only drop index entries which still point at this booking, as a newer booking may share a key
+        if (keys.id != null) {
+            this.bookingsById.remove(keys.id, booking);
+        }
+
+        CopyOnWriteArrayList<Booking> customerBookings =
+                keys.customerId == null ? null : this.bookingsByCustomerId.get(keys.customerId);
+        if (customerBookings != null) {
+            customerBookings.remove(booking);
+            if (customerBookings.isEmpty()) {
+                this.bookingsByCustomerId.remove(keys.customerId);
+            }
+        }
+
+        for (Map.Entry<String, String> fieldKey : keys.fieldKeys.entrySet()) {
+            this.bookingsByField.get(fieldKey.getKey()).remove(fieldKey.getValue(), booking);
+        }
+
+        if (keys.holdsTokens) {
+            releaseTokens(keys);
+        }
+        return true;
+    }
+
+    /**
+     * Releases each of a booking's access codes, so that they can be issued to another booking.
+     * @param keys the booking's index keys
+     */
+    private void releaseTokens(IndexedKeys keys) {
+        for (Map.Entry<String, String> fieldKey : keys.fieldKeys.entrySet()) {
+            BookingTokens.getInstance().release(fieldKey.getKey(), fieldKey.getValue());
+        }
+    }
+
+    /**
+     * Records that a booking holds each of its access codes, so that they are not issued to another booking.
+     * @param keys the booking's index keys
+     */
+    private void registerTokens(IndexedKeys keys) {
+        for (Map.Entry<String, String> fieldKey : keys.fieldKeys.entrySet()) {
+            BookingTokens.getInstance().register(fieldKey.getKey(), fieldKey.getValue());
+        }
+    }
+
+    /**
+     * The keys a booking was indexed under when it was added. Bookings are mutable, so these are recorded rather
+     * than re-read from the booking when it is removed.
+     */
+    private static class IndexedKeys {
+
+        /**
+         * order number the booking was added under
+         */
+        private final long sequence;
+
+        /**
+         * booking's unique ID at the time it was indexed
+         */
+        private final String id;
+
+        /**
+         * booking's customer ID at the time it was indexed
+         */
+        private final String customerId;
+
+        /**
+         * booking's testing site ID at the time it was indexed, null for home bookings
+         */
+        private final String testingSiteId;
+
+        /**
+         * booking's start time at the time it was indexed, null if it is not a valid date time
+         */
+        private final LocalDateTime startTime;
+
+        /**
+         * whether the booking was active when it was indexed, and so held its access codes
+         */
+        private final boolean holdsTokens;
+
+        /**
+         * lower case values of each indexed field the booking has
+         */
+        private final HashMap<String, String> fieldKeys;
+
+        /**
+         * Constructor.
+         * @param booking the booking being indexed
+         * @param sequence order number the booking is added under
+         */
+        private IndexedKeys(Booking booking, long sequence) {
+            this.sequence = sequence;
+            this.id = booking.getId();
+            this.customerId = booking.getCustomerId();
+            this.testingSiteId = booking.getTestingSiteId();
+            this.startTime = TimeSlotEngine.parseStartTime(booking.getStartTime());
+            this.holdsTokens = booking.isActive();
+            this.fieldKeys = new HashMap<>();
+
+            for (String field : indexedFields) {
+                String value = booking.getAdditionalInfoField(field);
+
+                if (value != null) {
+                    this.fieldKeys.put(field, value.toLowerCase());
+                }
+            }
+        }
+
+        /**
+         * Checks whether the booking takes a time slot at a testing site.
+         * @return true if the booking has a testing site and a valid start time, false otherwise
+         */
+        private boolean hasSlot() {
+            return this.testingSiteId != null && this.startTime != null;
+        }
     }
 }
@@ -0,0 +1,256 @@
+package COVIDbooking;
+
+import admininterface.NotificationBatcher;
+import utils.Settings;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton event bus which delivers booking events to their observers off the request path.
+ *
+ * Events are spread over a fixed number of lanes, each with its own bounded queue and a single worker thread.
+ * All events for a testing site go to the same lane, so they are delivered in the order they were published.
+ * When a lane's queue is full, publishing blocks until there is room (back-pressure).
+ *
+ * The bus can be tuned through the BOOKING_EVENT_LANES and BOOKING_EVENT_QUEUE_CAPACITY environment variables.
+ */
+public class BookingEventBus {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static BookingEventBus instance;
+
+    /**
+     * Time allowed for queued events to be delivered on all lanes together when the application exits.
+     */
+    private static final long shutdownTimeoutSeconds = 30;
+
+    /**
+     * The lanes events are delivered on.
+     */
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * Number of events published to the bus.
+     */
+    private final AtomicLong publishedCount;
+
+    /**
+     * Number of events which have been delivered to their observers.
+     */
+    private final AtomicLong dispatchedCount;
+
+    /**
+     * Total time between events being published and finishing delivery, in nanoseconds.
+     */
+    private final AtomicLong totalDispatchLatencyNanos;
+
+    /**
+     * Longest time between an event being published and finishing delivery, in nanoseconds.
+     */
+    private final AtomicLong maxDispatchLatencyNanos;
+
+    /**
+     * Private constructor.
+     */
+    private BookingEventBus() {
+        int laneCount = Math.max(1, Settings.getInt("BOOKING_EVENT_LANES", 4));
+        int queueCapacity = Math.max(1, Settings.getInt("BOOKING_EVENT_QUEUE_CAPACITY", 1000));
+
+        this.lanes = new ThreadPoolExecutor[laneCount];
+
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = "booking-events-" + i;
+
+            this.lanes[i] = new ThreadPoolExecutor(
+                    1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new BlockWhenFullPolicy());
+        }
+
+        this.publishedCount = new AtomicLong();
+        this.dispatchedCount = new AtomicLong();
+        this.totalDispatchLatencyNanos = new AtomicLong();
+        this.maxDispatchLatencyNanos = new AtomicLong();
+
+        // deliver anything still queued before the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "booking-events-shutdown"));
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of BookingEventBus.
+     */
+    public static synchronized BookingEventBus getInstance() {
+        if (instance == null) {
+            instance = new BookingEventBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Publishes a booking event, to be delivered to the observers of the booking's testing site.
+     *
+     * @param event The event which took place. One of "create", "modify" or "delete".
+     * @param booking The booking the event applies to.
+     */
+    public void publish(String event, Booking booking) {
+        long publishedAt = System.nanoTime();
+        this.publishedCount.incrementAndGet();
+
+        laneFor(booking).execute(() -> {
+            try {
+                BookingEventManager bookingEventManager = new BookingEventManager(booking);
+                bookingEventManager.notifyObservers(event);
+            } catch (Exception e) {
+                System.out.println(e.getMessage()); //FIXME: improve error handling here
+            } finally {
+                recordDispatch(System.nanoTime() - publishedAt);
+            }
+        });
+    }
+
+    /**
+     * Stops accepting events, waits for all queued events to be delivered, and writes any notifications they
+     * produced.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : this.lanes) {
+            lane.shutdown();
+        }
+
+        // the lanes drain in parallel, so they share one deadline rather than each waiting the full timeout in turn
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+
+        try {
+            for (ThreadPoolExecutor lane : this.lanes) {
+                lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // the delivered events may have left receptionist notifications waiting to be written
+        NotificationBatcher.getInstance().shutdown();
+    }
+
+    /**
+     * Gets the number of events waiting to be delivered.
+     *
+     * @return The total queue depth across all lanes.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+
+        for (ThreadPoolExecutor lane : this.lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the number of events published to the bus.
+     *
+     * @return The number of events published.
+     */
+    public long getPublishedCount() {
+        return this.publishedCount.get();
+    }
+
+    /**
+     * Gets the number of events which have been delivered.
+     *
+     * @return The number of events delivered.
+     */
+    public long getDispatchedCount() {
+        return this.dispatchedCount.get();
+    }
+
+    /**
+     * Gets the average time between an event being published and finishing delivery.
+     *
+     * @return The average dispatch latency in milliseconds, or 0 if no events have been delivered.
+     */
+    public double getAverageDispatchLatencyMillis() {
+        long dispatched = this.dispatchedCount.get();
+
+        if (dispatched == 0) {
+            return 0;
+        }
+        return this.totalDispatchLatencyNanos.get() / (dispatched * 1_000_000.0);
+    }
+
+    /**
+     * Gets the longest time between an event being published and finishing delivery.
+     *
+     * @return The maximum dispatch latency in milliseconds.
+     */
+    public double getMaxDispatchLatencyMillis() {
+        return this.maxDispatchLatencyNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Chooses the lane for a booking's events. Events for the same testing site always share a lane.
+     *
+     * @param booking The booking the event applies to.
+     * @return The lane the event should be delivered on.
+     */
+    private ThreadPoolExecutor laneFor(Booking booking) {
+        String testingSiteId = booking.getTestingSiteId();
+
+        if (testingSiteId == null) {
+            return this.lanes[0];
+        }
+        return this.lanes[Math.floorMod(testingSiteId.hashCode(), this.lanes.length)];
+    }
+
+    /**
+     * Records the delivery of an event.
+     *
+     * @param latencyNanos Time between the event being published and finishing delivery, in nanoseconds.
+     */
+    private void recordDispatch(long latencyNanos) {
+        this.dispatchedCount.incrementAndGet();
+        this.totalDispatchLatencyNanos.addAndGet(latencyNanos);
+        this.maxDispatchLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * Handler for events which cannot be queued straight away. Blocks the publisher until its lane has room, or
+     * delivers the event on the publishing thread if the bus is shutting down, so that no event is dropped.
+     */
+    private static class BlockWhenFullPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                runnable.run();
+                return;
+            }
+
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                runnable.run();
+                return;
+            }
+
+            // the bus may have shut down while the publisher was waiting, after the lane's worker last took from the
+            // queue, in which case nothing will deliver the event unless it is taken back and delivered here
+            if (executor.isShutdown() && executor.remove(runnable)) {
+                runnable.run();
+            }
+        }
+    }
+}
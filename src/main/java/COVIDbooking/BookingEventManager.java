@@ -56,14 +56,8 @@ public class BookingEventManager {
 
     private void populateAdmins(String testingSiteId) {
         // need to check that the booking does have a testing site, i.e. not home booking
-        // fill admins list with admins/healthcareWorkers at booking's site.
-        ArrayList<Receptionist> healthcareWorkers= UserFacade.getInstance().getReceptionists();
-
-        for (Receptionist admin : healthcareWorkers) {
-            if (testingSiteId.equals(admin.getWorkplace())) {
-                    this.admins.add(admin);
-                }
-            }
+        // fill admins list with the receptionists at booking's site.
+        this.admins.addAll(UserFacade.getInstance().getReceptionistsByWorkplace(testingSiteId));
     }
 
     /**
@@ -1,8 +1,20 @@
 package COVIDbooking;
 
+import COVIDtestingsites.FacilityTestingSite;
+import COVIDtestingsites.TestingSiteFacade;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import endpoints.BookingAPIEndpoint;
+import utils.Settings;
+import utils.SyncEngine;
+import utils.SyncTarget;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Facade class for the bookings package. Handles all interactions with Bookings.
@@ -12,7 +24,7 @@ public class BookingFacade {
     /**
      * Singleton instance of this class.
      */
-    private static BookingFacade instance;
+    private static volatile BookingFacade instance;
 
     /**
      * The BookingFactory used to construct bookings.
@@ -29,15 +41,29 @@ public class BookingFacade {
      */
     private static BookingCollection bookingCollection;
 
+    /**
+     * Time to wait for a pushed change before first polling the API for a booking, in milliseconds.
+     */
+    private final long pollInitialMillis;
+
+    /**
+     * Longest time to wait between polls of the API for a booking, in milliseconds.
+     */
+    private final long pollMaxMillis;
+
     /**
      * Private constructor.
      */
     private BookingFacade() {
+        this.pollInitialMillis = Math.max(1, Settings.getLong("BOOKING_POLL_INITIAL_MILLIS", 2000));
+        this.pollMaxMillis = Math.max(this.pollInitialMillis, Settings.getLong("BOOKING_POLL_MAX_MILLIS", 30000));
+
         bookingFactory = new ConcreteBookingFactory();
         bookingEndpoint = new BookingAPIEndpoint();
         bookingCollection = new BookingCollection();
 
-        selfPopulateFromAPI();
+        // populate the bookingCollection, and keep it in sync with the API in the background
+        SyncEngine.getInstance().register(new BookingSyncTarget());
     }
 
     /**
@@ -46,10 +72,17 @@ public class BookingFacade {
      * @return The singleton instance of BookingFacade.
      */
     public static BookingFacade getInstance() {
-        if (instance == null) {
-            instance = new BookingFacade();
+        BookingFacade result = instance;
+        if (result == null) {
+            synchronized (BookingFacade.class) {
+                result = instance;
+                if (result == null) {
+                    result = new BookingFacade();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
     }
 
     /**
@@ -59,49 +92,90 @@ public class BookingFacade {
      * @param testingSiteId The testing site's unique id
      * @param startTime The starting time of the booking
      * @param needRATKit Whether the user needs a RAT kit
-     * @return The created Booking object.
+     * @return The created Booking object, or null if the time slot at the testing site has been filled or the API
+     * did not accept the booking.
      */
     public Booking createBooking(String customerId, String testingSiteId, String startTime, Boolean needRATKit) {
         Booking newBooking = bookingFactory.createBooking(customerId, testingSiteId, startTime, needRATKit);
-        // notifying observers
-        BookingEventManager bookingEventManager = new BookingEventManager(newBooking);
-        bookingEventManager.notifyObservers("create");
 
-        pushNewBookingToAPI(newBooking);
-        bookingCollection.addBooking(newBooking);
+        // take the booking's time slot before anything else, as another session may be booking the same slot
+        if (!bookingCollection.reserveSlot(newBooking)) {
+            return null;
+        }
+
+        String bookingId = pushNewBookingToAPI(newBooking);
 
+        // a booking the API does not know about must not keep its slot or access codes
+        if (bookingId == null) {
+            bookingCollection.cancelReservation(newBooking);
+            return null;
+        }
+
+        bookingCollection.addReservedBooking(newBooking, bookingId);
+
+        // notifying observers, off the request path, only once the booking has been given its ID
+        BookingEventBus.getInstance().publish("create", newBooking);
 
         return newBooking;
     }
 
     /**
-     * Pulls all bookings from the API and populates the BookingCollection.
+     * Checks whether a testing site is open at a given time.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param startTime The time.
+     * @return true if the site is open, or its hours are not known, false otherwise.
      */
-    private void selfPopulateFromAPI() {
-        try {
-            // retrieve all bookings from the web service
-            ObjectNode[] bookingNodes = bookingEndpoint.makeGETRequest();
+    public boolean isFacilityOpen(String testingSiteId, LocalDateTime startTime) {
+        FacilityTestingSite testingSite = TestingSiteFacade.getInstance().getFacilityById(testingSiteId);
+        return testingSite == null || TimeSlotEngine.getInstance().isOpen(testingSite, startTime);
+    }
 
-            // for each booking found, add it to the bookingCollection
-            for (ObjectNode bookingNode : bookingNodes) {
-                bookingCollection.addBooking(bookingFactory.getBooking(bookingNode));
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage()); //FIXME: improve error handling here
+    /**
+     * Checks whether a testing site can take another booking at a given time.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param startTime The time.
+     * @return true if the time slot has room, false if it is full.
+     */
+    public boolean isTimeAvailable(String testingSiteId, LocalDateTime startTime) {
+        return TimeSlotEngine.getInstance().isSlotFree(testingSiteId, startTime);
+    }
+
+    /**
+     * Finds the next times a testing site is open and can take another booking.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param from The earliest time to be found.
+     * @param count The number of times to find.
+     * @return Up to count start times, in order, or an empty list if the testing site does not exist.
+     */
+    public List<LocalDateTime> getNextAvailableTimes(String testingSiteId, LocalDateTime from, int count) {
+        FacilityTestingSite testingSite = TestingSiteFacade.getInstance().getFacilityById(testingSiteId);
+
+        if (testingSite == null) {
+            return new ArrayList<>();
         }
+        return TimeSlotEngine.getInstance().nextFreeSlots(testingSite, from, count);
     }
 
     /**
      * Pushes a new booking to the API via POST.
      *
      * @param booking The booking to be added to the API.
+     * @return The ID the API assigned to the booking, or null if the booking was not created.
      */
-    private void pushNewBookingToAPI(Booking booking) {
+    private String pushNewBookingToAPI(Booking booking) {
         try {
-            bookingEndpoint.makePOSTRequest(booking.toJSON());
+            ObjectNode createdNode = bookingEndpoint.makePOSTRequest(booking.toJSON());
+
+            if (createdNode != null && createdNode.hasNonNull("id")) {
+                return createdNode.get("id").asText();
+            }
         } catch (Exception e) {
             System.out.println(e.getMessage()); //FIXME: improve error handling here
         }
+        return null;
     }
 
     /**
@@ -159,16 +233,51 @@ public class BookingFacade {
 
     /**
      * Updates a booking in the system and on the API.
+     * Stored bookings are shared between sessions and read by background threads, so a booking is changed by editing
+     * a copy of it, from Booking.copy, and replacing the stored booking with the copy here.
      *
-     * @param booking The booking to be updated.
+     * @param booking An edited copy of the booking to be updated.
      */
     public void updateBooking(Booking booking) {
         updateBookingOnAPI(booking);
-        // notifying observers
-        BookingEventManager bookingEventManager = new BookingEventManager(booking);
-        bookingEventManager.notifyObservers("modify");
+        // notifying observers, off the request path
+        BookingEventBus.getInstance().publish("modify", booking);
 
+        Booking oldBooking = bookingCollection.getBookingById(booking.getId());
         bookingCollection.updateBookingById(booking.getId(), booking);
+        recordIfAdministered(oldBooking, booking);
+    }
+
+    /**
+     * Ends the patient's wait at their testing site if a booking's test has just been administered, i.e. the
+     * booking was active before a change and is not after it. Results are recorded on the API, so this is usually
+     * seen when the background sync brings in the new status.
+     *
+     * @param oldBooking The booking before the change, or null if it was not stored.
+     * @param newBooking The booking after the change.
+     */
+    private static void recordIfAdministered(Booking oldBooking, Booking newBooking) {
+        if (oldBooking != null && oldBooking.isActive() && !newBooking.isActive()) {
+            TestingSiteFacade.getInstance().recordTestCompleted(newBooking.getId(), Instant.now());
+        }
+    }
+
+    /**
+     * Moves a booking to a new testing site or start time in the system, if the new time slot has room, and updates
+     * it on the API. The new slot is checked and taken atomically, and the booking's own place counts as free.
+     *
+     * @param booking An edited copy of the booking, from Booking.copy.
+     * @return true if the booking was moved, false if the new time slot is full, in which case nothing is changed.
+     */
+    public boolean rescheduleBooking(Booking booking) {
+        if (!bookingCollection.moveBooking(booking)) {
+            return false;
+        }
+
+        updateBookingOnAPI(booking);
+        // notifying observers, off the request path
+        BookingEventBus.getInstance().publish("modify", booking);
+        return true;
     }
 
     /**
@@ -177,9 +286,8 @@ public class BookingFacade {
      * @param booking The booking to be deleted.
      */
     public void deleteBooking(Booking booking) {
-        // notifying observers
-        BookingEventManager bookingEventManager = new BookingEventManager(booking);
-        bookingEventManager.notifyObservers("delete");
+        // notifying observers, off the request path
+        BookingEventBus.getInstance().publish("delete", booking);
 
         deleteBookingOnAPI(booking);
         bookingCollection.deleteBookingById(booking.getId());
@@ -212,10 +320,104 @@ public class BookingFacade {
             Booking updatedBooking = bookingFactory.getBooking(bookingNode);
 
             // overwrite the existing booking with the new one fetched from the API
-            bookingCollection.deleteBookingById(id);
-            bookingCollection.addBooking(updatedBooking);
+            Booking oldBooking = bookingCollection.getBookingById(id);
+            bookingCollection.updateBookingById(id, updatedBooking);
+            recordIfAdministered(oldBooking, updatedBooking);
         } catch (Exception e) {
             System.out.println(e.getMessage()); //FIXME: improve error handling
         }
     }
+
+    /**
+     * Waits until a booking meets a condition, or the timeout passes.
+     *
+     * The booking is re-checked whenever the BookingChangeFeed reports that it has changed, which happens as soon as
+     * the background sync or another session stores a new version of it. If no change arrives for a while, the
+     * booking is fetched from the API directly, waiting twice as long before each fetch, from
+     * BOOKING_POLL_INITIAL_MILLIS (2 seconds by default) up to BOOKING_POLL_MAX_MILLIS (30 seconds by default).
+     *
+     * @param bookingId The booking's unique ID.
+     * @param condition The condition to wait for.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of timeout.
+     * @return The booking once it meets the condition, or null if the timeout passed first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Booking awaitBooking(String bookingId, Predicate<Booking> condition, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long pollDelayMillis = this.pollInitialMillis;
+
+        try (BookingChangeFeed.Subscription subscription = BookingChangeFeed.getInstance().subscribe(bookingId)) {
+            while (true) {
+                Booking booking = getBookingById(bookingId);
+
+                if (booking != null && condition.test(booking)) {
+                    return booking;
+                }
+
+                long remainingNanos = deadline - System.nanoTime();
+
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+
+                long waitNanos = Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(pollDelayMillis));
+
+                if (!subscription.awaitChange(waitNanos, TimeUnit.NANOSECONDS) && waitNanos < remainingNanos) {
+                    // nothing has been pushed for a while, so ask the API directly
+                    syncBookingWithAPIById(bookingId);
+                    pollDelayMillis = Math.min(pollDelayMillis * 2, this.pollMaxMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the bookingCollection in sync with the bookings on the API.
+     */
+    private static class BookingSyncTarget implements SyncTarget<Booking> {
+
+        @Override
+        public String getName() {
+            return "bookings";
+        }
+
+        @Override
+        public String fetch(String etag, Consumer<ObjectNode> handler) throws Exception {
+            return bookingEndpoint.streamGETRequestIfChanged(etag, handler);
+        }
+
+        @Override
+        public Booking create(ObjectNode node) {
+            return bookingFactory.getBooking(node);
+        }
+
+        @Override
+        public String idOf(Booking booking) {
+            return booking.getId();
+        }
+
+        @Override
+        public void upsert(Booking booking) {
+            Booking oldBooking = bookingCollection.getBookingById(booking.getId());
+            bookingCollection.updateBookingById(booking.getId(), booking);
+            recordIfAdministered(oldBooking, booking);
+        }
+
+        @Override
+        public void remove(String id) {
+            bookingCollection.deleteBookingById(id);
+        }
+
+        @Override
+        public Collection<Booking> getAll() {
+            return bookingCollection.getAllBookings();
+        }
+
+        @Override
+        public ObjectNode toJson(Booking booking) {
+            return booking.toApiJson();
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package COVIDbooking;
+
+import utils.Settings;
+import utils.TokenAllocator;
+import java.util.HashMap;
+
+/**
+ * Singleton class which issues the access codes bookings are looked up by (PIN, QR code and URL), making sure that no
+ * two active bookings share a code.
+ *
+ * The alphabet and length of each code can be set with PIN_ALPHABET and PIN_LENGTH (6 digits by default),
+ * QR_CODE_ALPHABET and QR_CODE_LENGTH (15 digits by default), and URL_ALPHABET and URL_LENGTH (10 digits by default).
+ * Codes are made longer once half of those of the current length are in use, up to PIN_MAX_LENGTH, QR_CODE_MAX_LENGTH
+ * and URL_MAX_LENGTH (2 characters longer than the starting length by default), so that 6 digit PINs move to 7 digits
+ * at 500,000 active bookings rather than running out at a million.
+ * The BookingCollection registers the codes of active bookings as they are stored, and releases them when a booking
+ * is deleted or its test has been administered, so that codes can be reused.
+ */
+public class BookingTokens {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static volatile BookingTokens instance;
+
+    /**
+     * Default alphabet of every code.
+     */
+    private static final String digits = "1234567890";
+
+    /**
+     * Allocator of each access code, indexed by its additionalInfo key.
+     */
+    private final HashMap<String, TokenAllocator> allocators;
+
+    /**
+     * Private constructor.
+     */
+    private BookingTokens() {
+        this.allocators = new HashMap<>();
+
+        // the map is never changed after construction, so it may be read without locking
+        this.allocators.put("PIN", createAllocator("PIN", 6));
+        this.allocators.put("QRCode", createAllocator("QR_CODE", 15));
+        this.allocators.put("URL", createAllocator("URL", 10));
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of BookingTokens.
+     */
+    public static BookingTokens getInstance() {
+        BookingTokens result = instance;
+        if (result == null) {
+            synchronized (BookingTokens.class) {
+                result = instance;
+                if (result == null) {
+                    result = new BookingTokens();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Issues a new access code, reserving it until it is registered or released.
+     *
+     * @param field The code's additionalInfo key: 'PIN', 'QRCode' or 'URL'.
+     * @return The code.
+     * @throws IllegalStateException If every code up to the code's maximum length is in use.
+     */
+    public String allocate(String field) {
+        return this.allocators.get(field).allocate();
+    }
+
+    /**
+     * Records that an active booking holds an access code.
+     *
+     * @param field The code's additionalInfo key.
+     * @param token The code.
+     */
+    public void register(String field, String token) {
+        TokenAllocator allocator = this.allocators.get(field);
+
+        if (allocator != null) {
+            allocator.register(token);
+        }
+    }
+
+    /**
+     * Records that a booking no longer holds an access code, or that a reserved code will not be used.
+     *
+     * @param field The code's additionalInfo key.
+     * @param token The code.
+     */
+    public void release(String field, String token) {
+        TokenAllocator allocator = this.allocators.get(field);
+
+        if (allocator != null) {
+            allocator.release(token);
+        }
+    }
+
+    /**
+     * Creates the allocator of an access code from its settings.
+     *
+     * @param settingPrefix Prefix of the code's settings, i.e. 'PIN'.
+     * @param defaultLength Starting length of the code if it is not set.
+     * @return The allocator.
+     */
+    private static TokenAllocator createAllocator(String settingPrefix, int defaultLength) {
+        String alphabet = Settings.getString(settingPrefix + "_ALPHABET", digits);
+        int length = Math.max(1, Settings.getInt(settingPrefix + "_LENGTH", defaultLength));
+        int maxLength = Math.max(length, Settings.getInt(settingPrefix + "_MAX_LENGTH", length + 2));
+
+        return new TokenAllocator(alphabet, length, maxLength);
+    }
+}
@@ -1,13 +1,44 @@
 package COVIDbooking;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utils.RandomString;
 
 /**
  * Concrete product class facility booking holds COVID test information
  */
 public class FacilityBooking extends Booking {
 
+    /**
+     * additionalInfo key of the booking's PIN
+     */
+    private static final String pinKey = "PIN";
+    /**
+     * additionalInfo key prefixes of the previous venues and start times, followed by the version number
+     */
+    private static final String venueVersionPrefix = "venueVersion";
+    private static final String timeVersionPrefix = "timeVersion";
+    /**
+     * number of previous venues and start times kept
+     */
+    private static final int noVersions = 3;
+    /**
+     * value an empty version is stored as in additionalInfo
+     */
+    private static final String emptyVersion = "null";
+
+    /**
+     * booking's sms PIN code
+     */
+    private String pin;
+    /**
+     * previous testing site IDs, null entries are empty versions. Null if the booking has no venue versions
+     */
+    private String[] venueVersions;
+    /**
+     * previous start times, null entries are empty versions. Null if the booking has no time versions
+     */
+    private String[] timeVersions;
+
     /**
      * Constructor for facility booking through user input
      * @param customerId user's unique id string
@@ -28,52 +59,197 @@ public class FacilityBooking extends Booking {
      */
     public FacilityBooking(ObjectNode bookingNode) {
         super(bookingNode);
+        absorbTypedFields(getAdditionalInfo());
     }
 
     /**
-     * Function generates a PIN associated with the booking
+     * Function generates a PIN associated with the booking, which no other active booking has
      * @return PIN
      */
     public String generatePIN() {
-        return RandomString.main(4);
+        return BookingTokens.getInstance().allocate(pinKey);
     }
 
     /**
      * Function sets booking's PIN in additionalInfo
      */
     public void setPIN() {
-        String pin = this.generatePIN();
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("PIN", pin);
-        this.setAdditionalInfo(additionalInfo);
+        this.pin = this.generatePIN();
+    }
+
+    /**
+     * Function returns booking's PIN
+     * @return PIN, null if the booking does not have one
+     */
+    public String getPIN() {
+        return this.pin;
+    }
+
+    /**
+     * Function returns one of the booking's previous testing sites
+     * @param version version number, from 1 to 3
+     * @return the testing site's ID, null if the version is empty
+     */
+    public String getVenueVersion(int version) {
+        return this.venueVersions == null ? null : this.venueVersions[version - 1];
+    }
+
+    /**
+     * Function returns one of the booking's previous start times
+     * @param version version number, from 1 to 3
+     * @return the start time, null if the version is empty
+     */
+    public String getTimeVersion(int version) {
+        return this.timeVersions == null ? null : this.timeVersions[version - 1];
     }
 
     public void initiateVenueVersions() {
-        Integer noVersions = 3;
+        // set current as version 1, and the remaining versions as empty
+        this.venueVersions = new String[noVersions];
+        this.venueVersions[0] = getTestingSiteId();
+    }
+
+    public void initiateTimeVersions() {
+        // set current as version 1, and the remaining versions as empty
+        this.timeVersions = new String[noVersions];
+        this.timeVersions[0] = getStartTime();
+    }
 
-        // set current as version 1
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("venueVersion1", getTestingSiteId());
+    @Override
+    protected void absorbTypedFields(ObjectNode additionalInfo) {
+        super.absorbTypedFields(additionalInfo);
 
-        // set remaining versions as null
-        for (Integer i=2; i <= noVersions; i ++) {
-            additionalInfo.put("venueVersion" + i.toString(), "null");
+        JsonNode pinNode = additionalInfo.get(pinKey);
+        if (pinNode != null && pinNode.isTextual()) {
+            this.pin = pinNode.textValue();
+            additionalInfo.remove(pinKey);
         }
-        this.setAdditionalInfo(additionalInfo);
+
+        this.venueVersions = absorbVersions(additionalInfo, venueVersionPrefix, this.venueVersions);
+        this.timeVersions = absorbVersions(additionalInfo, timeVersionPrefix, this.timeVersions);
     }
 
-    public void initiateTimeVersions() {
-        Integer noVersions = 3;
+    @Override
+    protected void writeTypedFields(ObjectNode additionalInfo) {
+        super.writeTypedFields(additionalInfo);
+
+        if (this.pin != null) {
+            additionalInfo.put(pinKey, this.pin);
+        }
+        writeVersions(additionalInfo, venueVersionPrefix, this.venueVersions);
+        writeVersions(additionalInfo, timeVersionPrefix, this.timeVersions);
+    }
+
+    @Override
+    protected String getTypedField(String field) {
+        if (field.equals(pinKey)) {
+            return this.pin;
+        }
 
-        // set current as version 1
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("timeVersion1", getStartTime());
+        String[] versions = versionsFor(field);
+        int version = versionIndex(field);
 
-        // set remaining versions as null
-        for (Integer i=2; i <= noVersions; i ++) {
-            additionalInfo.put("timeVersion" + i.toString(), "null");
+        if (versions != null && version >= 0) {
+            return versions[version] == null ? emptyVersion : versions[version];
         }
-        this.setAdditionalInfo(additionalInfo);
+        return super.getTypedField(field);
     }
-}
 
+    @Override
+    protected boolean setTypedField(String field, String value) {
+        if (field.equals(pinKey)) {
+            this.pin = value;
+            return true;
+        }
+
+        int version = versionIndex(field);
+
+        if (version >= 0) {
+            if (field.startsWith(venueVersionPrefix) && this.venueVersions == null) {
+                this.venueVersions = new String[noVersions];
+            } else if (field.startsWith(timeVersionPrefix) && this.timeVersions == null) {
+                this.timeVersions = new String[noVersions];
+            }
+            versionsFor(field)[version] = emptyVersion.equals(value) ? null : value;
+            return true;
+        }
+        return super.setTypedField(field, value);
+    }
+
+    /**
+     * Function returns the versions a version field belongs to
+     * @param field attribute in additional info
+     * @return venueVersions or timeVersions, null if the field is not a version field
+     */
+    private String[] versionsFor(String field) {
+        if (field.startsWith(venueVersionPrefix)) {
+            return this.venueVersions;
+        } else if (field.startsWith(timeVersionPrefix)) {
+            return this.timeVersions;
+        }
+        return null;
+    }
+
+    /**
+     * Function returns the array index of a version field, i.e. 0 for 'venueVersion1'
+     * @param field attribute in additional info
+     * @return the index, -1 if the field is not a version field
+     */
+    private static int versionIndex(String field) {
+        String number;
+
+        if (field.startsWith(venueVersionPrefix)) {
+            number = field.substring(venueVersionPrefix.length());
+        } else if (field.startsWith(timeVersionPrefix)) {
+            number = field.substring(timeVersionPrefix.length());
+        } else {
+            return -1;
+        }
+
+        for (int i = 1; i <= noVersions; i++) {
+            if (number.equals(Integer.toString(i))) {
+                return i - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Function moves a set of version fields out of additionalInfo
+     * @param additionalInfo the booking's additionalInfo
+     * @param prefix key prefix of the versions
+     * @param versions the current versions, may be null
+     * @return the versions with any held in additionalInfo replaced, null if there are none
+     */
+    private static String[] absorbVersions(ObjectNode additionalInfo, String prefix, String[] versions) {
+        for (int i = 1; i <= noVersions; i++) {
+            JsonNode versionNode = additionalInfo.remove(prefix + i);
+
+            if (versionNode != null) {
+                if (versions == null) {
+                    versions = new String[noVersions];
+                }
+                String value = versionNode.asText();
+                versions[i - 1] = versionNode.isNull() || emptyVersion.equals(value) ? null : value;
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Function writes a set of version fields into additionalInfo
+     * @param additionalInfo the node being serialized
+     * @param prefix key prefix of the versions
+     * @param versions the versions, may be null
+     */
+    private static void writeVersions(ObjectNode additionalInfo, String prefix, String[] versions) {
+        if (versions == null) {
+            return;
+        }
+
+        for (int i = 1; i <= noVersions; i++) {
+            String value = versions[i - 1];
+            additionalInfo.put(prefix + i, value == null ? emptyVersion : value);
+        }
+    }
+}
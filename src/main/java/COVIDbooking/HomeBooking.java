@@ -1,13 +1,38 @@
 package COVIDbooking;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utils.RandomString;
 
 /**
  * Concrete product class holds home booking COVID tests details
  */
 public class HomeBooking extends Booking {
 
+    /**
+     * additionalInfo keys of the booking's typed fields
+     */
+    private static final String qrCodeKey = "QRCode";
+    private static final String urlKey = "URL";
+    private static final String pickedUpRATKitKey = "pickedUpRATKit";
+    private static final String patientNeedRATKitKey = "patientNeedRATKit";
+
+    /**
+     * QR code used to collect a RAT kit, null if the booking does not have one
+     */
+    private String qrCode;
+    /**
+     * URL hosting the home test, null if the booking does not have one
+     */
+    private String url;
+    /**
+     * whether the customer has picked up a RAT kit, null if not recorded
+     */
+    private Boolean pickedUpRATKit;
+    /**
+     * whether the patient needs to pick up a RAT kit from a testing site, null if not recorded
+     */
+    private Boolean patientNeedRATKit;
+
     /**
      * Constructor for home booking through user input
      * @param customerId user's unique id string
@@ -28,42 +53,37 @@ public class HomeBooking extends Booking {
      */
     public HomeBooking(ObjectNode bookingNode) {
         super(bookingNode);
+        absorbTypedFields(getAdditionalInfo());
     }
 
     /**
-     * Function generates QR code for this booking
+     * Function generates QR code for this booking, which no other active booking has
      * @return QRCode for home booking
      */
     public String generateQRCode() {
-        return RandomString.main(15);
+        return BookingTokens.getInstance().allocate(qrCodeKey);
     }
 
     /**
-     * Function generates URL to host home booking
+     * Function generates URL to host home booking, which no other active booking has
      * @return URL of home booking
      */
     public String generateURL() {
-        return RandomString.main(10);
+        return BookingTokens.getInstance().allocate(urlKey);
     }
 
     /**
      * Function sets booking's URL in additionalInfo
      */
     public void setURL() {
-        String url = this.generateURL();
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("URL", url);
-        this.setAdditionalInfo(additionalInfo);
+        this.url = this.generateURL();
     }
 
     /**
      * Function sets booking's QR code in additionalInfo
      */
     public void setQRCode() {
-        String qrCode = this.generateQRCode();
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("QRCode", qrCode);
-        this.setAdditionalInfo(additionalInfo);
+        this.qrCode = this.generateQRCode();
     }
 
     /**
@@ -71,7 +91,7 @@ public class HomeBooking extends Booking {
      * @param pickedUpRATKit true if picked up, false otherwise
      */
     public void setPickedUpKit(Boolean pickedUpRATKit) {
-        this.getAdditionalInfo().put("pickedUpRATKit", pickedUpRATKit);
+        this.pickedUpRATKit = pickedUpRATKit;
     }
 
     /**
@@ -79,7 +99,7 @@ public class HomeBooking extends Booking {
      * @param patientNeedRATKit true if needed, false otherwise
      */
     public void setPatientNeedRATKit(Boolean patientNeedRATKit) {
-        this.getAdditionalInfo().put("patientNeedRATKit", patientNeedRATKit);
+        this.patientNeedRATKit = patientNeedRATKit;
     }
 
     /**
@@ -90,7 +110,7 @@ public class HomeBooking extends Booking {
     public Boolean customerPicksUpRAT() {
 
         // if patient doesn't need, or kit has already picked up, return false
-        if (getAdditionalInfo().get("pickedUpRATKit").asBoolean() || !getAdditionalInfo().get("patientNeedRATKit").asBoolean() ) {
+        if (hasPickedUpRATKit() || !needToPickUpRATKit()) {
             return false;
         }
         // otherwise, pick up, return true
@@ -104,7 +124,7 @@ public class HomeBooking extends Booking {
      * @return true if patient needs a RAT kit from a testing site, false otherwise
      */
     public Boolean needToPickUpRATKit() {
-        return this.getAdditionalInfo().get("patientNeedRATKit").asBoolean();
+        return Boolean.TRUE.equals(this.patientNeedRATKit);
     }
 
     /**
@@ -112,6 +132,100 @@ public class HomeBooking extends Booking {
      * @return true if picked up, false otherwise
      */
     public Boolean hasPickedUpRATKit() {
-        return this.getAdditionalInfo().get("pickedUpRATKit").asBoolean();
+        return Boolean.TRUE.equals(this.pickedUpRATKit);
+    }
+
+    /**
+     * Function returns booking's QR code
+     * @return QR code, null if the booking does not have one
+     */
+    public String getQRCode() {
+        return this.qrCode;
+    }
+
+    /**
+     * Function returns booking's URL
+     * @return URL, null if the booking does not have one
+     */
+    public String getURL() {
+        return this.url;
+    }
+
+    @Override
+    protected void absorbTypedFields(ObjectNode additionalInfo) {
+        super.absorbTypedFields(additionalInfo);
+
+        JsonNode qrCodeNode = additionalInfo.get(qrCodeKey);
+        if (qrCodeNode != null && qrCodeNode.isTextual()) {
+            this.qrCode = qrCodeNode.textValue();
+            additionalInfo.remove(qrCodeKey);
+        }
+
+        JsonNode urlNode = additionalInfo.get(urlKey);
+        if (urlNode != null && urlNode.isTextual()) {
+            this.url = urlNode.textValue();
+            additionalInfo.remove(urlKey);
+        }
+
+        JsonNode pickedUpNode = additionalInfo.get(pickedUpRATKitKey);
+        if (pickedUpNode != null && pickedUpNode.isBoolean()) {
+            this.pickedUpRATKit = pickedUpNode.booleanValue();
+            additionalInfo.remove(pickedUpRATKitKey);
+        }
+
+        JsonNode needKitNode = additionalInfo.get(patientNeedRATKitKey);
+        if (needKitNode != null && needKitNode.isBoolean()) {
+            this.patientNeedRATKit = needKitNode.booleanValue();
+            additionalInfo.remove(patientNeedRATKitKey);
+        }
+    }
+
+    @Override
+    protected void writeTypedFields(ObjectNode additionalInfo) {
+        super.writeTypedFields(additionalInfo);
+
+        if (this.qrCode != null) {
+            additionalInfo.put(qrCodeKey, this.qrCode);
+        }
+        if (this.url != null) {
+            additionalInfo.put(urlKey, this.url);
+        }
+        if (this.pickedUpRATKit != null) {
+            additionalInfo.put(pickedUpRATKitKey, this.pickedUpRATKit);
+        }
+        if (this.patientNeedRATKit != null) {
+            additionalInfo.put(patientNeedRATKitKey, this.patientNeedRATKit);
+        }
+    }
+
+    @Override
+    protected String getTypedField(String field) {
+        switch (field) {
+            case qrCodeKey:
+                return this.qrCode;
+            case urlKey:
+                return this.url;
+            case pickedUpRATKitKey:
+                return this.pickedUpRATKit == null ? null : this.pickedUpRATKit.toString();
+            case patientNeedRATKitKey:
+                return this.patientNeedRATKit == null ? null : this.patientNeedRATKit.toString();
+            default:
+                return super.getTypedField(field);
+        }
+    }
+
+    @Override
+    protected boolean setTypedField(String field, String value) {
+        switch (field) {
+            case qrCodeKey:
+                this.qrCode = value;
+                return true;
+            case urlKey:
+                this.url = value;
+                return true;
+            default:
+                // the RAT kit flags are booleans, so text values are left in additionalInfo
+                return super.setTypedField(field, value);
+        }
     }
 }
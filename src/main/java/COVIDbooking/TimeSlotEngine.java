@@ -0,0 +1,284 @@
+package COVIDbooking;
+
+import COVIDtestingsites.FacilityTestingSite;
+import utils.Settings;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Singleton class which tracks how many bookings each testing site has in each time slot, so that sites are not
+ * overbooked.
+ *
+ * Each day is split into slots of SLOT_MINUTES (15 by default), and each site can take SLOT_CAPACITY bookings
+ * (4 by default) in each slot. The occupancy of a site is kept as one array of counters per day it has bookings on,
+ * which are updated atomically, so slots can be checked and booked from many sessions at once without locking.
+ */
+public class TimeSlotEngine {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static volatile TimeSlotEngine instance;
+
+    /**
+     * Length of each slot, in minutes.
+     */
+    private final int slotMinutes;
+
+    /**
+     * Number of bookings each site can take in each slot.
+     */
+    private final int slotCapacity;
+
+    /**
+     * Number of slots in a day.
+     */
+    private final int slotsPerDay;
+
+    /**
+     * Number of days ahead searched for free slots.
+     */
+    private final int searchDays;
+
+    /**
+     * Number of bookings in each slot, indexed by testing site ID and then by day.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<LocalDate, AtomicIntegerArray>> occupancy;
+
+    /**
+     * Private constructor.
+     */
+    private TimeSlotEngine() {
+        int minutesPerDay = 24 * 60;
+
+        // slots must divide the day evenly, so that each day starts on a slot boundary
+        int slotMinutes = Math.max(1, Math.min(minutesPerDay, Settings.getInt("SLOT_MINUTES", 15)));
+        while (minutesPerDay % slotMinutes != 0) {
+            slotMinutes--;
+        }
+
+        this.slotMinutes = slotMinutes;
+        this.slotCapacity = Math.max(1, Settings.getInt("SLOT_CAPACITY", 4));
+        this.slotsPerDay = minutesPerDay / slotMinutes;
+        this.searchDays = Math.max(1, Settings.getInt("SLOT_SEARCH_DAYS", 14));
+        this.occupancy = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of TimeSlotEngine.
+     */
+    public static TimeSlotEngine getInstance() {
+        TimeSlotEngine result = instance;
+        if (result == null) {
+            synchronized (TimeSlotEngine.class) {
+                result = instance;
+                if (result == null) {
+                    result = new TimeSlotEngine();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a booking's start time. Times from the API end in 'Z', which is dropped as start times are entered in
+     * local time.
+     *
+     * @param startTime The start time, i.e. '2022-12-12T12:12:00.000Z'.
+     * @return The start time, or null if it is not a valid date time.
+     */
+    public static LocalDateTime parseStartTime(String startTime) {
+        if (startTime == null) {
+            return null;
+        }
+
+        if (startTime.endsWith("Z")) {
+            startTime = startTime.substring(0, startTime.length() - 1);
+        }
+
+        try {
+            return LocalDateTime.parse(startTime);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a testing site is open at a given time. Sites with unknown hours are treated as always open.
+     *
+     * @param testingSite The testing site.
+     * @param time The time.
+     * @return true if the site is open, false otherwise.
+     */
+    public boolean isOpen(FacilityTestingSite testingSite, LocalDateTime time) {
+        return testingSite.isOpenAt(time.toLocalTime());
+    }
+
+    /**
+     * Checks whether the slot containing a given time has room for another booking.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param time The time.
+     * @return true if the slot has room, false if it is full.
+     */
+    public boolean isSlotFree(String testingSiteId, LocalDateTime time) {
+        AtomicIntegerArray day = getDay(testingSiteId, time.toLocalDate(), false);
+        return day == null || day.get(slotOf(time)) < this.slotCapacity;
+    }
+
+    /**
+     * Books the slot containing a given time, if it has room.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param time The time.
+     * @return true if the slot was booked, false if it is full.
+     */
+    public boolean tryBook(String testingSiteId, LocalDateTime time) {
+        AtomicIntegerArray day = getDay(testingSiteId, time.toLocalDate(), true);
+        int slot = slotOf(time);
+
+        while (true) {
+            int booked = day.get(slot);
+
+            if (booked >= this.slotCapacity) {
+                return false;
+            }
+            if (day.compareAndSet(slot, booked, booked + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves a booking from one slot to another, if the new slot has room. The new slot is taken before the old one is
+     * released, so the new slot is never overbooked and the booking never loses its place in between. A booking
+     * moving within its own slot keeps its place, and is not counted against itself.
+     *
+     * @param fromSiteId The unique ID of the testing site the booking is moving from.
+     * @param fromTime The time the booking is moving from.
+     * @param toSiteId The unique ID of the testing site the booking is moving to.
+     * @param toTime The time the booking is moving to.
+     * @return true if the booking was moved, false if the new slot is full.
+     */
+    public boolean tryMove(String fromSiteId, LocalDateTime fromTime, String toSiteId, LocalDateTime toTime) {
+        boolean sameSlot = fromSiteId.equals(toSiteId) && fromTime.toLocalDate().equals(toTime.toLocalDate())
+                && slotOf(fromTime) == slotOf(toTime);
+
+        if (sameSlot) {
+            return true;
+        }
+        if (!tryBook(toSiteId, toTime)) {
+            return false;
+        }
+
+        release(fromSiteId, fromTime);
+        return true;
+    }
+
+    /**
+     * Books the slot containing a given time, even if it is full. Used for bookings which already exist.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param time The time.
+     */
+    public void book(String testingSiteId, LocalDateTime time) {
+        getDay(testingSiteId, time.toLocalDate(), true).incrementAndGet(slotOf(time));
+    }
+
+    /**
+     * Releases a booking of the slot containing a given time.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param time The time.
+     */
+    public void release(String testingSiteId, LocalDateTime time) {
+        AtomicIntegerArray day = getDay(testingSiteId, time.toLocalDate(), false);
+
+        if (day != null) {
+            day.getAndUpdate(slotOf(time), booked -> Math.max(0, booked - 1));
+        }
+    }
+
+    /**
+     * Finds the next slots at a testing site which are open and have room, starting from a given time.
+     *
+     * @param testingSite The testing site.
+     * @param from The earliest time a slot may start.
+     * @param count The number of slots to find.
+     * @return The start times of up to count free slots, in order, within SLOT_SEARCH_DAYS (14 by default) of from.
+     */
+    public List<LocalDateTime> nextFreeSlots(FacilityTestingSite testingSite, LocalDateTime from, int count) {
+        ArrayList<LocalDateTime> freeSlots = new ArrayList<>();
+
+        LocalDate date = from.toLocalDate();
+        int slot = slotOf(from);
+
+        // a slot which has already started cannot be booked from its start
+        if (slotStart(date, slot).isBefore(from)) {
+            slot++;
+        }
+
+        for (int days = 0; days <= this.searchDays && freeSlots.size() < count; days++) {
+            AtomicIntegerArray day = getDay(testingSite.getId(), date, false);
+
+            for (; slot < this.slotsPerDay && freeSlots.size() < count; slot++) {
+                LocalDateTime start = slotStart(date, slot);
+
+                if (isOpen(testingSite, start) && (day == null || day.get(slot) < this.slotCapacity)) {
+                    freeSlots.add(start);
+                }
+            }
+
+            date = date.plusDays(1);
+            slot = 0;
+        }
+        return freeSlots;
+    }
+
+    /**
+     * Gets the slot counters of a testing site for a day.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param date The day.
+     * @param create Whether to create the counters if the site has no bookings that day.
+     * @return The counters, or null if there are none and create is false.
+     */
+    private AtomicIntegerArray getDay(String testingSiteId, LocalDate date, boolean create) {
+        if (!create) {
+            ConcurrentHashMap<LocalDate, AtomicIntegerArray> days = this.occupancy.get(testingSiteId);
+            return days == null ? null : days.get(date);
+        }
+
+        return this.occupancy.computeIfAbsent(testingSiteId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(date, day -> new AtomicIntegerArray(this.slotsPerDay));
+    }
+
+    /**
+     * Gets the index of the slot containing a given time within its day.
+     *
+     * @param time The time.
+     * @return The slot's index.
+     */
+    private int slotOf(LocalDateTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / this.slotMinutes;
+    }
+
+    /**
+     * Gets the start time of a slot.
+     *
+     * @param date The slot's day.
+     * @param slot The slot's index within its day.
+     * @return The slot's start time.
+     */
+    private LocalDateTime slotStart(LocalDate date, int slot) {
+        return date.atStartOfDay().plusMinutes((long) slot * this.slotMinutes);
+    }
+}
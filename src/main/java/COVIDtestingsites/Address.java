@@ -1,7 +1,8 @@
 package COVIDtestingsites;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import utils.Json;
 
 /**
  * Class stores information of an address
@@ -52,13 +53,10 @@ public class Address {
      */
     private ObjectNode additionalInfo;
 
-    /**
-     * ObjectMapper used for reading and writing JSON
-     */
-    private ObjectMapper mapper;
     
     /**
      * Constructor for Address.
+     * The address takes over the node's subtrees rather than copying them, so the node should not be reused.
      * @param address ObjectNode containing address information in JSON format. 
      */
     public Address(ObjectNode address) {
@@ -70,8 +68,8 @@ public class Address {
         this.suburb = address.get("suburb").asText();
         this.state = address.get("state").asText();
         this.postcode = address.get("postcode").asText();
-        this.additionalInfo = address.get("additionalInfo").deepCopy();
-        this.mapper = new ObjectMapper();
+        JsonNode additionalInfo = address.get("additionalInfo");
+        this.additionalInfo = additionalInfo instanceof ObjectNode ? (ObjectNode) additionalInfo : Json.createObjectNode();
     }
     
     /**
@@ -138,6 +136,15 @@ public class Address {
         return this.additionalInfo.deepCopy();
     }
 
+    /**
+     * Reads one field of additionalInfo without copying the whole tree. The returned node must not be modified.
+     * @param field name of the field
+     * @return JsonNode, the field's value, or a missing node if there is no such field.
+     */
+    public JsonNode getAdditionalInfoField(String field) {
+        return this.additionalInfo.path(field);
+    }
+
     /**
      * Getter for suburb
      * @return String, suburb's name
@@ -212,10 +219,11 @@ public class Address {
 
     /**
      * Setter for additionalInfo
+     * The stored tree is never modified in place, so the node is kept rather than copied.
      * @param additionalInfo ObjectNode containing address' additional info if needed.
      */
     public void setAdditionalInfo(ObjectNode additionalInfo) {
-        this.additionalInfo = additionalInfo.deepCopy();
+        this.additionalInfo = additionalInfo;
     }
 
     /**
@@ -223,14 +231,14 @@ public class Address {
      * @return ObjectNode containing Address information in JSON format.
      */
     public ObjectNode toJson(){
-        ObjectNode root = this.mapper.createObjectNode();
+        ObjectNode root = Json.createObjectNode();
         root.put("latitude", this.latitude);
-        root.put("longitude", this.latitude);
+        root.put("longitude", this.longitude);
         root.put("unitNumber", this.unitNumber);
         root.put("street", this.street);
         root.put("street2", this.street2);
-        root.put("street2", this.street2);
         root.put("suburb", this.suburb);
+        root.put("state", this.state);
         root.put("postcode", this.postcode);
         root.set("additionalInfo", this.additionalInfo);
         return root;
@@ -2,8 +2,10 @@ package COVIDtestingsites;
 
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.format.DateTimeParseException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import utils.Json;
 
 /**
  * Class represents a facility testing site's data from FIT3077 API
@@ -41,14 +43,72 @@ public class FacilityTestingSite {
     private Address address;
 
     /**
-     *  JSON data containing info such as type, open and close times.
+     * Keys of the additionalInfo fields which are held as typed fields rather than JSON.
+     */
+    private static final String openKey = "open";
+    private static final String closeKey = "close";
+    private static final String waitTimeKey = "waitTime";
+    private static final String driveThroughKey = "driveThrough";
+    private static final String walkInKey = "walk-in";
+    private static final String gpKey = "gp";
+    private static final String hospitalKey = "hospital";
+    private static final String clinicKey = "clinic";
+    private static final String canBookKey = "canBook";
+
+    /**
+     * Format of the open and close times. Accepts hours with or without a leading zero.
+     */
+    private static final DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("H:mm");
+
+    /**
+     * Any additionalInfo fields which are not held as typed fields below.
      */
     private ObjectNode additionalInfo;
 
     /**
-     * ObjectMapper used for reading and writing JSON
+     * opening time of the facility, null if not known
+     */
+    private LocalTime open;
+
+    /**
+     * closing time of the facility, null if not known
      */
-    private ObjectMapper mapper;
+    private LocalTime close;
+
+    /**
+     * current waiting time of the facility, null if not known
+     */
+    private String waitTime;
+
+    /**
+     * whether the facility handles drive through testing, null if not known
+     */
+    private Boolean driveThrough;
+
+    /**
+     * whether the facility handles walk-in testing, null if not known
+     */
+    private Boolean walkIn;
+
+    /**
+     * whether the facility is a type of GP, null if not known
+     */
+    private Boolean gp;
+
+    /**
+     * whether the facility is a type of hospital, null if not known
+     */
+    private Boolean hospital;
+
+    /**
+     * whether the facility is a type of clinic, null if not known
+     */
+    private Boolean clinic;
+
+    /**
+     * whether the facility supports onsite booking, null if not known
+     */
+    private Boolean canBook;
 
     /**
      * Constructor for manual creation of FacilityTestingSite
@@ -64,15 +124,14 @@ public class FacilityTestingSite {
         this.websiteUrl = websiteUrl;
         this.phoneNumber = phoneNumber;
         this.address = new Address(address.deepCopy()); // TODO need to change to address class
-        this.mapper = new ObjectMapper();
-        this.additionalInfo = this.mapper.createObjectNode();
+        this.additionalInfo = Json.createObjectNode();
         this.additionalInfoSetup();
-        this.setWaitTime("5 minutes");
         this.setOpenHours("9:00", "17:00");
     }
 
     /**
-     * Constructor for creation of FacilityTestingSite through JSON data
+     * Constructor for creation of FacilityTestingSite through JSON data.
+     * The site takes over the node's subtrees rather than copying them, so the node should not be reused.
      * @param testingSiteNode ObjectNode, JSON data of a testing site.
      */
     public FacilityTestingSite(ObjectNode testingSiteNode) {
@@ -81,37 +140,49 @@ public class FacilityTestingSite {
         this.description = testingSiteNode.get("description").asText();
         this.websiteUrl = testingSiteNode.get("websiteUrl").asText();
         this.phoneNumber = testingSiteNode.get("phoneNumber").asText();
-        this.address = new Address(testingSiteNode.get("address").deepCopy());
-        this.additionalInfo = testingSiteNode.get("additionalInfo").deepCopy();
-        this.mapper = new ObjectMapper();
+        this.address = new Address((ObjectNode) testingSiteNode.get("address"));
+        this.absorbAdditionalInfo(testingSiteNode.get("additionalInfo"));
     }
 
     /**
      * Gets opening time of a testing facility.
-     * @return LocalTime representation of opening time.
+     * @return LocalTime representation of opening time, null if not known.
      */
     public LocalTime getOpen(){
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
-        String open = this.getAdditionalInfo().get("open").asText();
-        return LocalTime.parse(open, fmt);
+        return this.open;
     }
 
     /**
      * Gets closing time of a testing facility.
-     * @return LocalTime representation of closing time.
+     * @return LocalTime representation of closing time, null if not known.
      */
     public LocalTime getClose(){
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
-        String close = this.getAdditionalInfo().get("close").asText();
-        return LocalTime.parse(close, fmt);
+        return this.close;
+    }
+
+    /**
+     * Checks whether the facility is open at a given time of day. Facilities with unknown hours are treated as always
+     * open, and facilities which close before they open are open overnight.
+     * @param time the time of day
+     * @return true if the facility is open, false otherwise.
+     */
+    public boolean isOpenAt(LocalTime time) {
+        if (this.open == null || this.close == null || this.open.equals(this.close)) {
+            return true;
+        }
+
+        if (this.close.isBefore(this.open)) {
+            return !time.isBefore(this.open) || time.isBefore(this.close);
+        }
+        return !time.isBefore(this.open) && time.isBefore(this.close);
     }
 
     /**
      * Gets the current waitingTime for a facility.
-     * @return String representation of waiting time.
+     * @return String representation of waiting time, null if not known.
      */
     public String getWaitTime(){
-        return this.getAdditionalInfo().get("waitTime").asText();
+        return this.waitTime;
     }
 
     /**
@@ -119,9 +190,7 @@ public class FacilityTestingSite {
      * @param waitTime String containing the waiting of a facility.
      */
     public void setWaitTime(String waitTime){
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("waitTime", waitTime);
-        this.setAdditionalInfo(additionalInfo);
+        this.waitTime = waitTime;
     }
 
     /**
@@ -129,10 +198,7 @@ public class FacilityTestingSite {
      * @param ability Boolean, true if the facility can support onsite booking, false otherwise.
      */
     public void setCanBook(Boolean ability) {
-        // put method adds if not already present and updates if it is present.
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("canBook", ability);
-        this.setAdditionalInfo(additionalInfo);
+        this.canBook = ability;
     }
  
     /**
@@ -140,7 +206,7 @@ public class FacilityTestingSite {
      * @return Boolean, true if the facility supports onsite booking and false otherwise.
      */
     public Boolean canBook() {
-        return this.getAdditionalInfo().get("canBook").booleanValue();
+        return Boolean.TRUE.equals(this.canBook);
     }
     
     /**
@@ -149,14 +215,8 @@ public class FacilityTestingSite {
      * @param close containing closing time of FacilityTestingSite.
      */
     public void setOpenHours(String open, String close) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
-        // using LocalTime.toString() so it can be parsed properly later.
-        LocalTime openTime = LocalTime.parse(open, fmt);
-        LocalTime closeTime = LocalTime.parse(close, fmt);
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("open", openTime.toString());
-        additionalInfo.put("close", closeTime.toString());
-        this.setAdditionalInfo(additionalInfo);    
+        this.open = LocalTime.parse(open, timeFormat);
+        this.close = LocalTime.parse(close, timeFormat);
     }
 
     /**
@@ -164,9 +224,7 @@ public class FacilityTestingSite {
      * @param val Boolean, true if the facility can handle drive-through testing, false otherwise.
      */
     public void setDriveThrough(Boolean val) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("driveThrough", val);
-        this.setAdditionalInfo(additionalInfo);
+        this.driveThrough = val;
     }
 
     /**
@@ -174,9 +232,7 @@ public class FacilityTestingSite {
      * @param val Boolean, true if the facility can handle walk-in testing, false otherwise.
      */
     public void setWalkIn(Boolean val) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("walk-in", val);
-        this.setAdditionalInfo(additionalInfo);
+        this.walkIn = val;
     }
 
     /**
@@ -184,9 +240,7 @@ public class FacilityTestingSite {
      * @param val Boolean, true if the facility can handle walk-in testing, false otherwise.
      */
     public void setClinic(Boolean val) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("clinic", val);
-        this.setAdditionalInfo(additionalInfo);
+        this.clinic = val;
     }
 
     /**
@@ -194,9 +248,7 @@ public class FacilityTestingSite {
      * @param val Boolean, true if the facility is a type of GP, false otherwise.
      */
     public void setGP(Boolean val) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("gp", val);
-        this.setAdditionalInfo(additionalInfo);
+        this.gp = val;
     }
 
     /**
@@ -204,9 +256,7 @@ public class FacilityTestingSite {
      * @param val Boolean, true if the facility is a type of hospital, false otherwise.
      */
     public void setHospital(Boolean val) {
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.put("hospital", val);
-        this.setAdditionalInfo(additionalInfo);
+        this.hospital = val;
     }
 
     /**
@@ -214,7 +264,7 @@ public class FacilityTestingSite {
      * @return val Boolean, true if the facility handles drive through testing, false otherwise.
      */
     public Boolean isDriveThrough() {
-        return this.getAdditionalInfo().get("driveThrough").asBoolean();
+        return Boolean.TRUE.equals(this.driveThrough);
     }
 
     /**
@@ -222,7 +272,7 @@ public class FacilityTestingSite {
      * @return val Boolean, true if the facility handles walk-in testing, false otherwise.
      */
     public Boolean isWalkIn() {
-        return this.getAdditionalInfo().get("walk-in").asBoolean();
+        return Boolean.TRUE.equals(this.walkIn);
     }
 
     /**
@@ -230,7 +280,7 @@ public class FacilityTestingSite {
      * @return val Boolean, true if the facility is a type of clinic, false otherwise.
      */
     public Boolean isClinic() {
-        return this.getAdditionalInfo().get("clinic").asBoolean();
+        return Boolean.TRUE.equals(this.clinic);
     }
     
     /**
@@ -238,7 +288,7 @@ public class FacilityTestingSite {
      * @return val Boolean, true if the facility is a type of GP, false otherwise.
      */
     public Boolean isGP() {
-        return this.getAdditionalInfo().get("gp").asBoolean();
+        return Boolean.TRUE.equals(this.gp);
     }
 
     /**
@@ -246,24 +296,47 @@ public class FacilityTestingSite {
      * @return val Boolean, true if the facility is a type of hospital, false otherwise.
      */
     public Boolean isHospital() {
-        return this.getAdditionalInfo().get("hospital").asBoolean();
+        return Boolean.TRUE.equals(this.hospital);
+    }
+
+    /**
+     * Method to determine whether the facility has a type, i.e. 'driveThrough', 'walk-in', 'gp', 'hospital' or 'clinic'.
+     * Types which are not held as typed fields are read from the remaining additionalInfo.
+     * @param type name of the type's additionalInfo field
+     * @return true if the facility is of the type, false otherwise.
+     */
+    public boolean hasType(String type) {
+        switch (type) {
+            case driveThroughKey:
+                return isDriveThrough();
+            case walkInKey:
+                return isWalkIn();
+            case gpKey:
+                return isGP();
+            case hospitalKey:
+                return isHospital();
+            case clinicKey:
+                return isClinic();
+            case canBookKey:
+                return canBook();
+            default:
+                return this.additionalInfo.path(type).asBoolean();
+        }
     }
 
     /**
      * Method to add all the required fields in additionalInfo when creating an instance of FacilityTestingSite, initially null
      */
     public void additionalInfoSetup(){
-        ObjectNode additionalInfo = this.getAdditionalInfo();
-        additionalInfo.putNull("waitTime");
-        additionalInfo.putNull("open");
-        additionalInfo.putNull("close");
-        additionalInfo.putNull("hospital");
-        additionalInfo.putNull("clinic");
-        additionalInfo.putNull("gp");
-        additionalInfo.putNull("walk-in");
-        additionalInfo.putNull("driveThrough");
-        additionalInfo.putNull("canBook");
-        this.setAdditionalInfo(additionalInfo);
+        this.waitTime = null;
+        this.open = null;
+        this.close = null;
+        this.hospital = null;
+        this.clinic = null;
+        this.gp = null;
+        this.walkIn = null;
+        this.driveThrough = null;
+        this.canBook = null;
     }
 
     /**
@@ -315,11 +388,23 @@ public class FacilityTestingSite {
     }
 
     /**
-     * Getter for additionalInfo
+     * Getter for additionalInfo. The typed fields are written back into a new node, so changes to it do not affect
+     * the testing site unless passed to setAdditionalInfo.
      * @return ObjectNode, Additional info of testing sites if needed
      */
     public ObjectNode getAdditionalInfo() {
-        return this.additionalInfo.deepCopy();
+        ObjectNode additionalInfo = Json.createObjectNode();
+        additionalInfo.put(waitTimeKey, this.waitTime);
+        additionalInfo.put(openKey, this.open == null ? null : this.open.toString());
+        additionalInfo.put(closeKey, this.close == null ? null : this.close.toString());
+        additionalInfo.put(hospitalKey, this.hospital);
+        additionalInfo.put(clinicKey, this.clinic);
+        additionalInfo.put(gpKey, this.gp);
+        additionalInfo.put(walkInKey, this.walkIn);
+        additionalInfo.put(driveThroughKey, this.driveThrough);
+        additionalInfo.put(canBookKey, this.canBook);
+        additionalInfo.setAll(this.additionalInfo);
+        return additionalInfo;
     }
 
     /**
@@ -327,7 +412,8 @@ public class FacilityTestingSite {
      * @param additionalInfo Object Node
      */
     public void setAdditionalInfo(ObjectNode additionalInfo) {
-        this.additionalInfo = additionalInfo.deepCopy();
+        this.additionalInfoSetup();
+        this.absorbAdditionalInfo(additionalInfo.deepCopy());
     }
 
     /**
@@ -375,7 +461,7 @@ public class FacilityTestingSite {
      * @return ObjectNode containing TestingSite information in JSON format.
      */
     public ObjectNode toJson() {
-        ObjectNode root = this.mapper.createObjectNode();
+        ObjectNode root = Json.createObjectNode();
 
         root.put("name", this.name);
         root.put("description", this.description);
@@ -383,7 +469,96 @@ public class FacilityTestingSite {
         root.put("phoneNumber", this.phoneNumber);
         // uses set since address is already ObjectNode
         root.set("address", this.address.toJson());
-        root.set("additionalInfo", this.additionalInfo);
+        root.set("additionalInfo", this.getAdditionalInfo());
         return root;
     }
+
+    /**
+     * Converts the testing site to JSON in the form the API returns it, so that it can be recreated with the JSON
+     * constructor.
+     * @return ObjectNode containing TestingSite information in JSON format.
+     */
+    public ObjectNode toApiJson() {
+        ObjectNode root = this.toJson();
+        root.put("id", this.id);
+        return root;
+    }
+
+    /**
+     * Takes over an additionalInfo node, moving each known field it holds into its typed field. Fields which are
+     * unknown, or whose values cannot be understood, are kept as JSON.
+     * @param additionalInfo JSON data of the site's additional info, which is modified and kept by the site.
+     */
+    private void absorbAdditionalInfo(JsonNode additionalInfo) {
+        if (additionalInfo instanceof ObjectNode) {
+            this.additionalInfo = (ObjectNode) additionalInfo;
+        } else {
+            this.additionalInfo = Json.createObjectNode();
+        }
+
+        JsonNode waitTimeNode = this.additionalInfo.get(waitTimeKey);
+        if (waitTimeNode != null && (waitTimeNode.isTextual() || waitTimeNode.isNull())) {
+            this.waitTime = waitTimeNode.textValue();
+            this.additionalInfo.remove(waitTimeKey);
+        }
+
+        this.open = absorbTime(openKey);
+        this.close = absorbTime(closeKey);
+        this.driveThrough = absorbBoolean(driveThroughKey);
+        this.walkIn = absorbBoolean(walkInKey);
+        this.gp = absorbBoolean(gpKey);
+        this.hospital = absorbBoolean(hospitalKey);
+        this.clinic = absorbBoolean(clinicKey);
+        this.canBook = absorbBoolean(canBookKey);
+    }
+
+    /**
+     * Moves a time field out of additionalInfo.
+     * @param key the field's key
+     * @return the time held in the field, or null if it is missing, null or cannot be parsed (in which case it is kept)
+     */
+    private LocalTime absorbTime(String key) {
+        JsonNode node = this.additionalInfo.get(key);
+
+        if (node == null) {
+            return null;
+        }
+
+        try {
+            LocalTime time = node.isNull() ? null : LocalTime.parse(node.asText(), timeFormat);
+            this.additionalInfo.remove(key);
+            return time;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves a boolean field out of additionalInfo.
+     * @param key the field's key
+     * @return the value held in the field, or null if it is missing, null or not a boolean (in which case it is kept)
+     */
+    private Boolean absorbBoolean(String key) {
+        JsonNode node = this.additionalInfo.get(key);
+
+        if (node == null) {
+            return null;
+        }
+
+        Boolean value;
+
+        if (node.isBoolean()) {
+            value = node.booleanValue();
+        } else if (node.isNull()) {
+            value = null;
+        } else if (node.isTextual() && (node.asText().equals("true") || node.asText().equals("false"))) {
+            // the API may hold booleans as text, which were previously read with asBoolean
+            value = Boolean.valueOf(node.asText());
+        } else {
+            return null;
+        }
+
+        this.additionalInfo.remove(key);
+        return value;
+    }
 }
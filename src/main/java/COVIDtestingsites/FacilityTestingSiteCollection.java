@@ -1,36 +1,81 @@
 package COVIDtestingsites;
 
 import java.util.ArrayList;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import java.util.Objects;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /**
- * Class holds list of facility testing sites
+ * Class holds list of facility testing sites.
+ * Sites are read far more often than they change, so lookups by ID read a concurrent map which changes are applied
+ * to in place, and searches read an immutable snapshot of the search indexes, both without locking. Changes are
+ * synchronized, and only schedule the snapshot to be rebuilt on a background thread, so writers do not wait for the
+ * indexes to be built. Changes made during a rebuild are picked up together by the next one, so loading many sites one
+ * at a time does not rebuild the indexes for each site. The first search after a change waits for a snapshot which
+ * includes it, building one itself if no rebuild is under way, so searches never miss a change which has been made.
  */
 public class FacilityTestingSiteCollection  {
     /**
-     * list of facility testing sites
+     * facility testing sites indexed by their unique ID, in the order they were added. Only used while synchronized
      */
-    private ArrayList<FacilityTestingSite> facilities;
+    private final LinkedHashMap<String, FacilityTestingSite> facilities;
+
+    /**
+     * facility testing sites indexed by their unique ID, kept up to date with every change
+     */
+    private final ConcurrentHashMap<String, FacilityTestingSite> facilitiesById;
+
+    /**
+     * number of changes made to the facilities. Only changed while synchronized
+     */
+    private volatile long version;
+
+    /**
+     * most recently built snapshot of the facility testing sites, null until the first one is built
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * whether a rebuild of the snapshot is waiting to start
+     */
+    private final AtomicBoolean rebuildScheduled;
+
+    /**
+     * Held while a snapshot is being built, so that only one is built at a time.
+     */
+    private final ReentrantLock rebuildLock;
+
+    /**
+     * Rebuilds the snapshot off the lock.
+     */
+    private final ExecutorService rebuilder;
 
     public FacilityTestingSiteCollection() {
-        this.facilities = new ArrayList<>();
+        this.facilities = new LinkedHashMap<>();
+        this.facilitiesById = new ConcurrentHashMap<>();
+        this.rebuildScheduled = new AtomicBoolean();
+        this.rebuildLock = new ReentrantLock();
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "site-index");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     /**
      * Searches FacilityTestingSiteCollection and prints facility info of facilities in the input suburb.
-     * @param name name of suburb as String
+     * @param name name of suburb as String, ignoring case
      * @return the list of facilities that are located in that suburb
      */
     public ArrayList<FacilityTestingSite> searchSuburbName(String name) {
-        ArrayList<FacilityTestingSite> foundSites = new ArrayList<>();
-
-        for (FacilityTestingSite facility : facilities) {
-            if (facility.getAddress().getSuburb().equals(name)) {
-                foundSites.add(facility);
-            }
+        if (name == null) {
+            return new ArrayList<>();
         }
-        return foundSites;
+        return search(new SiteQuery().setSuburb(name));
     }
 
     /**
@@ -39,14 +84,10 @@ public class FacilityTestingSiteCollection  {
      * @return the facility site that matches the id. null if none match.
      */
     public FacilityTestingSite searchId(String id) {
-        FacilityTestingSite foundSite = null;
-
-        for (FacilityTestingSite facility : facilities) {
-            if (facility.getId().equals(id)) {
-                foundSite = facility;
-            }
+        if (id == null) {
+            return null;
         }
-        return foundSite;
+        return this.facilitiesById.get(id);
     }
 
     /**
@@ -55,15 +96,51 @@ public class FacilityTestingSiteCollection  {
      * @return the list of facilities that match the type
      */
     public ArrayList<FacilityTestingSite> searchType(String type) {
-        ArrayList<FacilityTestingSite> foundSites = new ArrayList<>();
+        return search(new SiteQuery().requireType(type));
+    }
 
-        for (FacilityTestingSite facility : facilities) {
-            ObjectNode additionalInfo = facility.getAdditionalInfo();
-            if (additionalInfo.get(type) != null && additionalInfo.get(type).asBoolean()) {
-                foundSites.add(facility);
-            }
-        }
-        return foundSites;
+    /**
+     * Searches FacilityTestingSiteCollection for the facilities which match every filter of a query.
+     * @param query the query
+     * @return the list of facilities that match, in the order the query asks for
+     */
+    public ArrayList<FacilityTestingSite> search(SiteQuery query) {
+        return getSnapshot().facetIndex.search(query);
+    }
+
+    /**
+     * Searches FacilityTestingSiteCollection for the facilities whose name, suburb, street or postcode best match some
+     * text, allowing for prefixes and typos.
+     * @param text the text, ignoring case
+     * @param limit the most facilities to find
+     * @return up to limit facilities, best match first
+     */
+    public ArrayList<FacilityTestingSite> searchText(String text, int limit) {
+        return getSnapshot().textIndex.search(text, limit);
+    }
+
+    /**
+     * Searches FacilityTestingSiteCollection for the facilities nearest to a location.
+     * @param latitude the location's latitude, in degrees
+     * @param longitude the location's longitude, in degrees
+     * @param count the number of facilities to find
+     * @param filter facilities which do not match are skipped
+     * @return up to count facilities, nearest first
+     */
+    public ArrayList<FacilityTestingSite> searchNearest(double latitude, double longitude, int count,
+                                                        Predicate<FacilityTestingSite> filter) {
+        return getSnapshot().spatialIndex.nearest(latitude, longitude, count, filter);
+    }
+
+    /**
+     * Searches FacilityTestingSiteCollection for the facilities within a distance of a location.
+     * @param latitude the location's latitude, in degrees
+     * @param longitude the location's longitude, in degrees
+     * @param radiusKm the distance, in kilometres
+     * @return the facilities within the distance, nearest first
+     */
+    public ArrayList<FacilityTestingSite> searchWithinRadius(double latitude, double longitude, double radiusKm) {
+        return getSnapshot().spatialIndex.withinRadius(latitude, longitude, radiusKm);
     }
 
     /**
@@ -72,16 +149,170 @@ public class FacilityTestingSiteCollection  {
      * @return true if site exists, false otherwise
      */
     public Boolean checkSiteExists(String testingSiteId){
+        return searchId(testingSiteId) != null;
+    }
+
+    /**
+     * Adds a facility, replacing any facility with the same ID.
+     * @param testingSite the facility
+     */
+    public synchronized void addTestingSite(FacilityTestingSite testingSite) {
+        putTestingSite(testingSite);
+    }
+
+    /**
+     * Replaces the facility with the same ID as testingSite, or adds testingSite if there is none.
+     * @param testingSite the new version of the facility
+     */
+    public synchronized void updateTestingSite(FacilityTestingSite testingSite) {
+        // replacing an existing facility keeps its place in the list
+        putTestingSite(testingSite);
+    }
 
-        for (FacilityTestingSite testingSite : this.facilities) {
-            if (Objects.equals(testingSite.getId(), testingSiteId)) {
-                return true;
+    /**
+     * Removes the facility with the given ID.
+     * @param testingSiteId facility's unique ID
+     * @return true if the facility was removed, false if it did not exist
+     */
+    public synchronized boolean deleteTestingSiteById(String testingSiteId) {
+        if (this.facilities.remove(testingSiteId) == null) {
+            return false;
+        }
+        if (testingSiteId != null) {
+            this.facilitiesById.remove(testingSiteId);
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * Gets every facility in the collection, including changes the search indexes have not caught up with yet.
+     * @return list of all facilities
+     */
+    public synchronized ArrayList<FacilityTestingSite> getAllTestingSites() {
+        return new ArrayList<>(this.facilities.values());
+    }
+
+    /**
+     * Adds or replaces a facility. Must be called while synchronized.
+     * @param testingSite the facility
+     */
+    private void putTestingSite(FacilityTestingSite testingSite) {
+        this.facilities.put(testingSite.getId(), testingSite);
+
+        if (testingSite.getId() != null) {
+            this.facilitiesById.put(testingSite.getId(), testingSite);
+        }
+        changed();
+    }
+
+    /**
+     * Records a change to the facilities, and schedules the snapshot to be rebuilt if a rebuild is not already
+     * waiting to start. Must be called while synchronized.
+     */
+    private void changed() {
+        this.version++;
+
+        if (this.rebuildScheduled.compareAndSet(false, true)) {
+            this.rebuilder.execute(() -> {
+                // changes made from here on are not certain to be in this rebuild, so must schedule another
+                this.rebuildScheduled.set(false);
+                rebuildSnapshot();
+            });
+        }
+    }
+
+    /**
+     * Builds a snapshot of the facilities as they are now and publishes it, unless the published snapshot already
+     * includes every change. Only copying the facilities holds the collection's lock; the indexes are built without
+     * it, under the rebuildLock, so that callers arriving during a rebuild wait for it rather than repeating it.
+     * @return the newest published snapshot
+     */
+    private Snapshot rebuildSnapshot() {
+        this.rebuildLock.lock();
+        try {
+            Snapshot currentSnapshot = this.snapshot;
+
+            // a rebuild which finished while this one was waiting may already include every change
+            if (isCurrent(currentSnapshot)) {
+                return currentSnapshot;
+            }
+
+            ArrayList<FacilityTestingSite> currentFacilities;
+            long currentVersion;
+
+            synchronized (this) {
+                currentFacilities = new ArrayList<>(this.facilities.values());
+                currentVersion = this.version;
             }
+
+            // rebuilds run one at a time, each from a later copy, so the new snapshot is always the newest
+            Snapshot newSnapshot = new Snapshot(currentFacilities, currentVersion);
+            this.snapshot = newSnapshot;
+            return newSnapshot;
+        } finally {
+            this.rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the facilities which includes every change made so far. If the published snapshot is out of
+     * date, the caller waits for the pending rebuild, or builds the snapshot itself.
+     * @return the snapshot
+     */
+    private Snapshot getSnapshot() {
+        Snapshot currentSnapshot = this.snapshot;
+
+        if (isCurrent(currentSnapshot)) {
+            return currentSnapshot;
         }
-        return false;
+        return rebuildSnapshot();
     }
 
-    public void addTestingSite(FacilityTestingSite testingSite) {
-        this.facilities.add(testingSite);
+    /**
+     * Checks whether a snapshot includes every change made to the facilities.
+     * @param snapshot the snapshot, or null if none has been built
+     * @return true if the snapshot is up to date, false otherwise
+     */
+    private boolean isCurrent(Snapshot snapshot) {
+        return snapshot != null && snapshot.version == this.version;
+    }
+
+    /**
+     * An immutable view of the facilities at one point in time. A snapshot is never changed once it is published.
+     */
+    private static class Snapshot {
+
+        /**
+         * number of changes made to the facilities when the snapshot was taken
+         */
+        private final long version;
+
+        /**
+         * the facilities indexed by their location
+         */
+        private final SiteSpatialIndex spatialIndex;
+
+        /**
+         * the facilities indexed by their types and address
+         */
+        private final SiteFacetIndex facetIndex;
+
+        /**
+         * the facilities indexed by the words of their name and address
+         */
+        private final SiteTextIndex textIndex;
+
+        /**
+         * Constructor.
+         * @param facilities the facilities, which must not be changed afterwards
+         * @param version number of changes made to the facilities when they were copied
+         */
+        private Snapshot(ArrayList<FacilityTestingSite> facilities, long version) {
+            this.version = version;
+            this.spatialIndex = new SiteSpatialIndex(facilities);
+            this.facetIndex = new SiteFacetIndex(facilities);
+            this.textIndex = new SiteTextIndex(facilities);
+        }
     }
 }
@@ -0,0 +1,219 @@
+package COVIDtestingsites;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable index of testing sites by each of their facets: their types, suburb, state and postcode.
+ *
+ * Each value of each facet has a bitset with a bit set for every site which has that value, so a query is answered by
+ * intersecting the bitsets of its filters and reading the sites whose bits remain. Opening hours depend on the time
+ * of the query, so they are checked on the sites which match every other filter.
+ */
+public class SiteFacetIndex {
+
+    /**
+     * Types which are indexed. Other types are checked on each site.
+     */
+    private static final String[] indexedTypes = {"driveThrough", "walk-in", "gp", "hospital", "clinic", "canBook"};
+
+    /**
+     * The indexed sites, in the order they were added.
+     */
+    private final FacilityTestingSite[] sites;
+
+    /**
+     * Sites with each indexed type.
+     */
+    private final HashMap<String, BitSet> byType;
+
+    /**
+     * Sites in each suburb, keyed by lower case suburb.
+     */
+    private final HashMap<String, BitSet> bySuburb;
+
+    /**
+     * Sites in each state, keyed by lower case state.
+     */
+    private final HashMap<String, BitSet> byState;
+
+    /**
+     * Sites with each postcode, keyed by lower case postcode.
+     */
+    private final HashMap<String, BitSet> byPostcode;
+
+    /**
+     * Constructor, building the index.
+     *
+     * @param testingSites The sites to be indexed.
+     */
+    public SiteFacetIndex(List<FacilityTestingSite> testingSites) {
+        this.sites = testingSites.toArray(new FacilityTestingSite[0]);
+        this.byType = new HashMap<>();
+        this.bySuburb = new HashMap<>();
+        this.byState = new HashMap<>();
+        this.byPostcode = new HashMap<>();
+
+        for (String type : indexedTypes) {
+            this.byType.put(type, new BitSet(this.sites.length));
+        }
+
+        for (int i = 0; i < this.sites.length; i++) {
+            FacilityTestingSite testingSite = this.sites[i];
+
+            for (String type : indexedTypes) {
+                if (testingSite.hasType(type)) {
+                    this.byType.get(type).set(i);
+                }
+            }
+
+            Address address = testingSite.getAddress();
+            if (address != null) {
+                addToFacet(this.bySuburb, address.getSuburb(), i);
+                addToFacet(this.byState, address.getState(), i);
+                addToFacet(this.byPostcode, address.getPostcode(), i);
+            }
+        }
+    }
+
+    /**
+     * Finds the sites which match every filter of a query.
+     *
+     * @param query The query.
+     * @return The matching sites, in the order the query asks for.
+     */
+    public ArrayList<FacilityTestingSite> search(SiteQuery query) {
+        BitSet matches = new BitSet(this.sites.length);
+        matches.set(0, this.sites.length);
+
+        ArrayList<String> unindexedTypes = new ArrayList<>();
+
+        for (String type : query.getTypes()) {
+            BitSet typeMatches = this.byType.get(type);
+
+            if (typeMatches == null) {
+                unindexedTypes.add(type);
+            } else {
+                matches.and(typeMatches);
+            }
+        }
+
+        intersectFacet(matches, this.bySuburb, query.getSuburb());
+        intersectFacet(matches, this.byState, query.getState());
+        intersectFacet(matches, this.byPostcode, query.getPostcode());
+
+        ArrayList<FacilityTestingSite> found = new ArrayList<>();
+
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            FacilityTestingSite testingSite = this.sites[i];
+
+            if (query.getOpenAt() != null && !testingSite.isOpenAt(query.getOpenAt())) {
+                continue;
+            }
+            if (!hasAllTypes(testingSite, unindexedTypes)) {
+                continue;
+            }
+            found.add(testingSite);
+        }
+
+        Comparator<FacilityTestingSite> order = comparatorFor(query.getOrder(), found);
+        if (order != null) {
+            found.sort(order);
+        }
+        return found;
+    }
+
+    /**
+     * Sets a site's bit in the bitset of its value of a facet.
+     *
+     * @param facet The facet's bitsets, keyed by lower case value.
+     * @param value The site's value, ignored if null.
+     * @param index The site's position in the index.
+     */
+    private void addToFacet(HashMap<String, BitSet> facet, String value, int index) {
+        if (value != null) {
+            facet.computeIfAbsent(value.toLowerCase(Locale.ROOT), key -> new BitSet(this.sites.length)).set(index);
+        }
+    }
+
+    /**
+     * Clears the bits of every site which does not have a value of a facet.
+     *
+     * @param matches The bits of the sites matched so far.
+     * @param facet The facet's bitsets, keyed by lower case value.
+     * @param value The value sites must have, or null to leave matches unchanged.
+     */
+    private static void intersectFacet(BitSet matches, HashMap<String, BitSet> facet, String value) {
+        if (value == null) {
+            return;
+        }
+
+        BitSet valueMatches = facet.get(value.toLowerCase(Locale.ROOT));
+
+        if (valueMatches == null) {
+            matches.clear();
+        } else {
+            matches.and(valueMatches);
+        }
+    }
+
+    /**
+     * Checks whether a site has every one of a list of types.
+     *
+     * @param testingSite The site.
+     * @param types The types.
+     * @return true if the site has every type, false otherwise.
+     */
+    private static boolean hasAllTypes(FacilityTestingSite testingSite, List<String> types) {
+        for (String type : types) {
+            if (!testingSite.hasType(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the comparator which puts sites in an order.
+     *
+     * @param order The order.
+     * @param testingSites The sites to be put in order.
+     * @return The comparator, or null if the sites are kept in the order they were added.
+     */
+    private static Comparator<FacilityTestingSite> comparatorFor(SiteQuery.Order order,
+                                                                 List<FacilityTestingSite> testingSites) {
+        switch (order) {
+            case NAME:
+                return Comparator.comparing(FacilityTestingSite::getName,
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            case SUBURB:
+                return Comparator.comparing(SiteFacetIndex::suburbOf, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            case WAIT_TIME:
+                // estimates change as tests are completed, so each is read once rather than during the sort
+                WaitTimeEstimator estimator = WaitTimeEstimator.getInstance();
+                IdentityHashMap<FacilityTestingSite, Long> waits = new IdentityHashMap<>();
+                for (FacilityTestingSite testingSite : testingSites) {
+                    waits.put(testingSite, estimator.getEstimatedWaitMillis(testingSite.getId()));
+                }
+                return Comparator.comparing(waits::get);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets a site's suburb.
+     *
+     * @param testingSite The site.
+     * @return The suburb, or null if the site has no address.
+     */
+    private static String suburbOf(FacilityTestingSite testingSite) {
+        Address address = testingSite.getAddress();
+        return address == null ? null : address.getSuburb();
+    }
+}
@@ -0,0 +1,181 @@
+package COVIDtestingsites;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A search over testing sites, made up of any number of filters which every site found must match, and the order the
+ * sites are returned in. Text filters are case-insensitive.
+ */
+public class SiteQuery {
+
+    /**
+     * Orders search results can be returned in.
+     */
+    public enum Order {
+        /**
+         * The order the sites were added in.
+         */
+        NONE,
+        /**
+         * Alphabetical order of name.
+         */
+        NAME,
+        /**
+         * Alphabetical order of suburb.
+         */
+        SUBURB,
+        /**
+         * Shortest estimated wait first, as estimated by the WaitTimeEstimator.
+         */
+        WAIT_TIME
+    }
+
+    /**
+     * Types every site found must have, i.e. 'driveThrough' or 'walk-in'.
+     */
+    private final ArrayList<String> types;
+
+    /**
+     * Suburb every site found must be in, null to allow any suburb.
+     */
+    private String suburb;
+
+    /**
+     * State every site found must be in, null to allow any state.
+     */
+    private String state;
+
+    /**
+     * Postcode every site found must have, null to allow any postcode.
+     */
+    private String postcode;
+
+    /**
+     * Time of day every site found must be open at, null to allow any hours.
+     */
+    private LocalTime openAt;
+
+    /**
+     * Order the sites found are returned in.
+     */
+    private Order order;
+
+    /**
+     * Constructor, for a query matching every site in the order they were added.
+     */
+    public SiteQuery() {
+        this.types = new ArrayList<>();
+        this.order = Order.NONE;
+    }
+
+    /**
+     * Requires sites to have a type, such as 'driveThrough', 'walk-in', 'gp', 'hospital', 'clinic' or 'canBook'.
+     * @param type the type
+     * @return this query
+     */
+    public SiteQuery requireType(String type) {
+        this.types.add(type);
+        return this;
+    }
+
+    /**
+     * Requires sites to be in a suburb.
+     * @param suburb the suburb, or null to allow any suburb
+     * @return this query
+     */
+    public SiteQuery setSuburb(String suburb) {
+        this.suburb = suburb;
+        return this;
+    }
+
+    /**
+     * Requires sites to be in a state.
+     * @param state the state, or null to allow any state
+     * @return this query
+     */
+    public SiteQuery setState(String state) {
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * Requires sites to have a postcode.
+     * @param postcode the postcode, or null to allow any postcode
+     * @return this query
+     */
+    public SiteQuery setPostcode(String postcode) {
+        this.postcode = postcode;
+        return this;
+    }
+
+    /**
+     * Requires sites to be open at a time of day.
+     * @param openAt the time of day, or null to allow any hours
+     * @return this query
+     */
+    public SiteQuery setOpenAt(LocalTime openAt) {
+        this.openAt = openAt;
+        return this;
+    }
+
+    /**
+     * Sets the order the sites found are returned in.
+     * @param order the order
+     * @return this query
+     */
+    public SiteQuery setOrder(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Gets the types every site found must have.
+     * @return the types
+     */
+    public List<String> getTypes() {
+        return Collections.unmodifiableList(this.types);
+    }
+
+    /**
+     * Gets the suburb every site found must be in.
+     * @return the suburb, null if any suburb is allowed
+     */
+    public String getSuburb() {
+        return this.suburb;
+    }
+
+    /**
+     * Gets the state every site found must be in.
+     * @return the state, null if any state is allowed
+     */
+    public String getState() {
+        return this.state;
+    }
+
+    /**
+     * Gets the postcode every site found must have.
+     * @return the postcode, null if any postcode is allowed
+     */
+    public String getPostcode() {
+        return this.postcode;
+    }
+
+    /**
+     * Gets the time of day every site found must be open at.
+     * @return the time of day, null if any hours are allowed
+     */
+    public LocalTime getOpenAt() {
+        return this.openAt;
+    }
+
+    /**
+     * Gets the order the sites found are returned in.
+     * @return the order
+     */
+    public Order getOrder() {
+        return this.order;
+    }
+}
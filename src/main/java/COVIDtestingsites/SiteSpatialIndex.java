@@ -0,0 +1,396 @@
+package COVIDtestingsites;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Immutable spatial index over testing sites, answering nearest-site and radius searches without scanning every site.
+ *
+ * Sites are placed on the unit sphere and kept in a balanced k-d tree over their three coordinates. Straight-line
+ * distance through the sphere grows with distance over the earth's surface, so the tree finds the sites which are
+ * nearest over the surface, with no special cases near the poles or the date line. Sites with no coordinates are
+ * not indexed.
+ */
+public class SiteSpatialIndex {
+
+    /**
+     * Mean radius of the earth, in kilometres.
+     */
+    private static final double earthRadiusKm = 6371.0088;
+
+    /**
+     * The indexed sites, in k-d tree order: the site at the middle of any range splits the rest of the range.
+     */
+    private final FacilityTestingSite[] sites;
+
+    /**
+     * Coordinates of each site on the unit sphere, three per site, in the same order as sites.
+     */
+    private final double[] points;
+
+    /**
+     * Constructor, building the index.
+     *
+     * @param testingSites The sites to be indexed.
+     */
+    public SiteSpatialIndex(List<FacilityTestingSite> testingSites) {
+        ArrayList<FacilityTestingSite> located = new ArrayList<>();
+
+        for (FacilityTestingSite testingSite : testingSites) {
+            if (toPoint(testingSite) != null) {
+                located.add(testingSite);
+            }
+        }
+
+        this.sites = located.toArray(new FacilityTestingSite[0]);
+        this.points = new double[this.sites.length * 3];
+
+        for (int i = 0; i < this.sites.length; i++) {
+            System.arraycopy(toPoint(this.sites[i]), 0, this.points, i * 3, 3);
+        }
+
+        build(0, this.sites.length, 0);
+    }
+
+    /**
+     * Gets the distance over the earth's surface between a point and a testing site.
+     *
+     * @param latitude The point's latitude, in degrees.
+     * @param longitude The point's longitude, in degrees.
+     * @param testingSite The testing site.
+     * @return The distance in kilometres, or null if the site has no coordinates.
+     */
+    public static Double distanceKm(double latitude, double longitude, FacilityTestingSite testingSite) {
+        double[] sitePoint = toPoint(testingSite);
+
+        if (sitePoint == null) {
+            return null;
+        }
+        return chordToKm(squaredChord(toPoint(latitude, longitude), sitePoint, 0));
+    }
+
+    /**
+     * Finds the sites nearest to a point which match a filter.
+     *
+     * @param latitude The point's latitude, in degrees.
+     * @param longitude The point's longitude, in degrees.
+     * @param count The number of sites to find.
+     * @param filter Sites which do not match are skipped.
+     * @return Up to count sites, nearest first.
+     */
+    public ArrayList<FacilityTestingSite> nearest(double latitude, double longitude, int count,
+                                                  Predicate<FacilityTestingSite> filter) {
+        ArrayList<FacilityTestingSite> found = new ArrayList<>();
+
+        if (count < 1) {
+            return found;
+        }
+
+        // the furthest of the best sites so far is at the head, so it can be replaced when a nearer one is found
+        PriorityQueue<Neighbour> best =
+                new PriorityQueue<>(Comparator.comparingDouble(neighbour -> -neighbour.squaredChord));
+        searchNearest(toPoint(latitude, longitude), 0, this.sites.length, 0, count, filter, best);
+
+        ArrayList<Neighbour> neighbours = new ArrayList<>(best);
+        neighbours.sort(Comparator.comparingDouble(neighbour -> neighbour.squaredChord));
+
+        for (Neighbour neighbour : neighbours) {
+            found.add(this.sites[neighbour.index]);
+        }
+        return found;
+    }
+
+    /**
+     * Finds every site within a distance of a point.
+     *
+     * @param latitude The point's latitude, in degrees.
+     * @param longitude The point's longitude, in degrees.
+     * @param radiusKm The distance over the earth's surface, in kilometres.
+     * @return The sites within the distance, nearest first.
+     */
+    public ArrayList<FacilityTestingSite> withinRadius(double latitude, double longitude, double radiusKm) {
+        double[] target = toPoint(latitude, longitude);
+        double maxSquaredChord = kmToSquaredChord(radiusKm);
+
+        ArrayList<Neighbour> neighbours = new ArrayList<>();
+        searchRadius(target, 0, this.sites.length, 0, maxSquaredChord, neighbours);
+        neighbours.sort(Comparator.comparingDouble(neighbour -> neighbour.squaredChord));
+
+        ArrayList<FacilityTestingSite> found = new ArrayList<>();
+        for (Neighbour neighbour : neighbours) {
+            found.add(this.sites[neighbour.index]);
+        }
+        return found;
+    }
+
+    /**
+     * Gets the number of sites in the index.
+     *
+     * @return The number of indexed sites.
+     */
+    public int size() {
+        return this.sites.length;
+    }
+
+    /**
+     * Arranges a range of sites into a k-d tree, splitting on one coordinate at each level.
+     *
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @param axis The coordinate the range is split on.
+     */
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+
+        build(from, middle, (axis + 1) % 3);
+        build(middle + 1, to, (axis + 1) % 3);
+    }
+
+    /**
+     * Partially sorts a range of sites on one coordinate, so that the kth site is in its sorted position, with no
+     * greater site before it and no smaller site after it.
+     *
+     * @param left The start of the range, inclusive.
+     * @param right The end of the range, inclusive.
+     * @param k The position to be sorted.
+     * @param axis The coordinate sorted on.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = this.points[((left + right) >>> 1) * 3 + axis];
+            int i = left;
+            int j = right;
+
+            while (i <= j) {
+                while (this.points[i * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (this.points[j * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two sites and their coordinates.
+     *
+     * @param i The first site's position.
+     * @param j The second site's position.
+     */
+    private void swap(int i, int j) {
+        FacilityTestingSite site = this.sites[i];
+        this.sites[i] = this.sites[j];
+        this.sites[j] = site;
+
+        for (int axis = 0; axis < 3; axis++) {
+            double coordinate = this.points[i * 3 + axis];
+            this.points[i * 3 + axis] = this.points[j * 3 + axis];
+            this.points[j * 3 + axis] = coordinate;
+        }
+    }
+
+    /**
+     * Searches a subtree for sites nearer than the furthest of the best found so far.
+     *
+     * @param target The point searched from.
+     * @param from The start of the subtree's range, inclusive.
+     * @param to The end of the subtree's range, exclusive.
+     * @param axis The coordinate the subtree is split on.
+     * @param count The number of sites to find.
+     * @param filter Sites which do not match are skipped.
+     * @param best The best sites found so far, furthest first.
+     */
+    private void searchNearest(double[] target, int from, int to, int axis, int count,
+                               Predicate<FacilityTestingSite> filter, PriorityQueue<Neighbour> best) {
+        if (from >= to) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        double squaredChord = squaredChord(target, this.points, middle * 3);
+
+        if ((best.size() < count || squaredChord < best.peek().squaredChord) && filter.test(this.sites[middle])) {
+            best.add(new Neighbour(middle, squaredChord));
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+
+        double offset = target[axis] - this.points[middle * 3 + axis];
+        int nextAxis = (axis + 1) % 3;
+
+        // search the side of the split the target is on first, as it is the most likely to hold the nearest sites
+        if (offset < 0) {
+            searchNearest(target, from, middle, nextAxis, count, filter, best);
+        } else {
+            searchNearest(target, middle + 1, to, nextAxis, count, filter, best);
+        }
+
+        // the other side can only hold nearer sites if the split is nearer than the furthest of the best sites
+        if (best.size() < count || offset * offset < best.peek().squaredChord) {
+            if (offset < 0) {
+                searchNearest(target, middle + 1, to, nextAxis, count, filter, best);
+            } else {
+                searchNearest(target, from, middle, nextAxis, count, filter, best);
+            }
+        }
+    }
+
+    /**
+     * Searches a subtree for sites within a distance of a point.
+     *
+     * @param target The point searched from.
+     * @param from The start of the subtree's range, inclusive.
+     * @param to The end of the subtree's range, exclusive.
+     * @param axis The coordinate the subtree is split on.
+     * @param maxSquaredChord The distance, as the square of the straight-line distance on the unit sphere.
+     * @param found The sites found so far.
+     */
+    private void searchRadius(double[] target, int from, int to, int axis, double maxSquaredChord,
+                              List<Neighbour> found) {
+        if (from >= to) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        double squaredChord = squaredChord(target, this.points, middle * 3);
+
+        if (squaredChord <= maxSquaredChord) {
+            found.add(new Neighbour(middle, squaredChord));
+        }
+
+        double offset = target[axis] - this.points[middle * 3 + axis];
+        int nextAxis = (axis + 1) % 3;
+
+        if (offset < 0 || offset * offset <= maxSquaredChord) {
+            searchRadius(target, from, middle, nextAxis, maxSquaredChord, found);
+        }
+        if (offset >= 0 || offset * offset <= maxSquaredChord) {
+            searchRadius(target, middle + 1, to, nextAxis, maxSquaredChord, found);
+        }
+    }
+
+    /**
+     * Gets a testing site's position on the unit sphere.
+     *
+     * @param testingSite The testing site.
+     * @return The site's coordinates, or null if it has no latitude and longitude.
+     */
+    private static double[] toPoint(FacilityTestingSite testingSite) {
+        Address address = testingSite.getAddress();
+
+        if (address == null || address.getLatitude() == null || address.getLongitude() == null) {
+            return null;
+        }
+        return toPoint(address.getLatitude(), address.getLongitude());
+    }
+
+    /**
+     * Converts a latitude and longitude to a position on the unit sphere.
+     *
+     * @param latitude The latitude, in degrees.
+     * @param longitude The longitude, in degrees.
+     * @return The position's three coordinates.
+     */
+    private static double[] toPoint(double latitude, double longitude) {
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+
+        return new double[] {
+                cosLatitude * Math.cos(longitudeRadians),
+                cosLatitude * Math.sin(longitudeRadians),
+                Math.sin(latitudeRadians)
+        };
+    }
+
+    /**
+     * Gets the square of the straight-line distance between two positions on the unit sphere.
+     *
+     * @param target The first position.
+     * @param points Array holding the second position.
+     * @param offset Index of the second position's first coordinate in points.
+     * @return The squared distance.
+     */
+    private static double squaredChord(double[] target, double[] points, int offset) {
+        double dx = target[0] - points[offset];
+        double dy = target[1] - points[offset + 1];
+        double dz = target[2] - points[offset + 2];
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Converts a squared straight-line distance on the unit sphere to a distance over the earth's surface.
+     *
+     * @param squaredChord The squared straight-line distance.
+     * @return The distance in kilometres.
+     */
+    private static double chordToKm(double squaredChord) {
+        double halfChord = Math.min(1.0, Math.sqrt(squaredChord) / 2);
+        return 2 * Math.asin(halfChord) * earthRadiusKm;
+    }
+
+    /**
+     * Converts a distance over the earth's surface to a squared straight-line distance on the unit sphere.
+     *
+     * @param km The distance in kilometres.
+     * @return The squared straight-line distance.
+     */
+    private static double kmToSquaredChord(double km) {
+        // distances of half the earth's circumference or more cover the whole sphere
+        double angle = Math.min(Math.PI, Math.max(0, km) / earthRadiusKm);
+        double chord = 2 * Math.sin(angle / 2);
+
+        return chord * chord;
+    }
+
+    /**
+     * A site found by a search, with its squared straight-line distance from the point searched from.
+     */
+    private static class Neighbour {
+
+        /**
+         * The site's position in the index.
+         */
+        private final int index;
+
+        /**
+         * The site's squared straight-line distance on the unit sphere.
+         */
+        private final double squaredChord;
+
+        /**
+         * Constructor.
+         *
+         * @param index The site's position in the index.
+         * @param squaredChord The site's squared straight-line distance on the unit sphere.
+         */
+        private Neighbour(int index, double squaredChord) {
+            this.index = index;
+            this.squaredChord = squaredChord;
+        }
+    }
+}
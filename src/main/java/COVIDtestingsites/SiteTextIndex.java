@@ -0,0 +1,586 @@
+package COVIDtestingsites;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Immutable index of the words in testing sites' names and addresses, for ranked, typo-tolerant searches.
+ *
+ * Every distinct word is kept in a sorted dictionary, with the sites it appears in, so the words starting with a
+ * prefix are a single range of the dictionary. Every word is also indexed by its trigrams, the runs of three
+ * characters in it, so that words spelt slightly differently to a search can be found by the trigrams they share with
+ * it, without comparing the search to every word.
+ */
+public class SiteTextIndex {
+
+    /**
+     * Score of a word which is exactly a word searched for.
+     */
+    private static final double exactScore = 1.0;
+
+    /**
+     * Highest score of a word which starts with a word searched for. Every such word scores less than an exact word.
+     */
+    private static final double prefixScore = 0.75;
+
+    /**
+     * Highest score of a word within a few typos of a word searched for. Every such word scores less than a word
+     * starting with it.
+     */
+    private static final double typoScore = 0.5;
+
+    /**
+     * Most words checked for each prefix searched for, so that a short prefix does not match most of the index.
+     */
+    private static final int maxPrefixWords = 64;
+
+    /**
+     * Shortest word searched for which may have typos in it.
+     */
+    private static final int minTypoLength = 3;
+
+    /**
+     * Shortest word searched for which may have two typos in it. Shorter words share too few trigrams with words two
+     * typos away for the trigrams to narrow down the words worth comparing.
+     */
+    private static final int twoTypoLength = 8;
+
+    /**
+     * Character marking the start and end of a word, so that a word's trigrams include its first and last letters.
+     */
+    private static final char boundary = '$';
+
+    /**
+     * The indexed sites, in the order they were added.
+     */
+    private final FacilityTestingSite[] sites;
+
+    /**
+     * Every distinct word, in sorted order.
+     */
+    private final String[] words;
+
+    /**
+     * Positions of the sites each word appears in, indexed the same as words.
+     */
+    private final int[][] wordSites;
+
+    /**
+     * Number of each trigram, indexed by the trigram.
+     */
+    private final HashMap<String, Integer> trigramIds;
+
+    /**
+     * Indexes of the words containing each trigram, indexed by the trigram's number.
+     */
+    private final int[][] trigramWords;
+
+    /**
+     * Working space for searches which have finished, so that each search does not allocate arrays the size of the
+     * index.
+     */
+    private final ConcurrentLinkedQueue<Scratch> scratchPool;
+
+    /**
+     * Constructor, building the index.
+     *
+     * @param testingSites The sites to be indexed.
+     */
+    public SiteTextIndex(List<FacilityTestingSite> testingSites) {
+        this.sites = testingSites.toArray(new FacilityTestingSite[0]);
+        this.scratchPool = new ConcurrentLinkedQueue<>();
+
+        HashMap<String, IntList> sitesByWord = new HashMap<>();
+        for (int i = 0; i < this.sites.length; i++) {
+            for (String word : wordsOf(this.sites[i])) {
+                // a site's words are added together, so a repeated word only needs checking against the last site
+                sitesByWord.computeIfAbsent(word, key -> new IntList()).addIfNotLast(i);
+            }
+        }
+
+        this.words = sitesByWord.keySet().toArray(new String[0]);
+        Arrays.sort(this.words);
+        this.wordSites = new int[this.words.length][];
+
+        this.trigramIds = new HashMap<>();
+        ArrayList<IntList> wordsByTrigram = new ArrayList<>();
+
+        for (int wordIndex = 0; wordIndex < this.words.length; wordIndex++) {
+            this.wordSites[wordIndex] = sitesByWord.get(this.words[wordIndex]).toArray();
+
+            for (String trigram : trigramsOf(this.words[wordIndex])) {
+                Integer trigramId = this.trigramIds.get(trigram);
+
+                if (trigramId == null) {
+                    trigramId = wordsByTrigram.size();
+                    this.trigramIds.put(trigram, trigramId);
+                    wordsByTrigram.add(new IntList());
+                }
+                // a word with a repeated trigram is only listed once
+                wordsByTrigram.get(trigramId).addIfNotLast(wordIndex);
+            }
+        }
+
+        this.trigramWords = new int[wordsByTrigram.size()][];
+        for (int i = 0; i < this.trigramWords.length; i++) {
+            this.trigramWords[i] = wordsByTrigram.get(i).toArray();
+        }
+    }
+
+    /**
+     * Finds the sites whose name or address best matches a search. A site matches if every word of the search is a
+     * word of the site, the start of one, or within a few typos of one. Exact words rank above prefixes, which rank
+     * above words with typos.
+     *
+     * @param text The search, such as 'clayton' or 'box hil'. Case is ignored.
+     * @param limit The most sites to find.
+     * @return Up to limit sites, best match first. Sites which match equally well are in the order they were added.
+     */
+    public ArrayList<FacilityTestingSite> search(String text, int limit) {
+        ArrayList<FacilityTestingSite> found = new ArrayList<>();
+        List<String> searchWords = tokenize(text);
+
+        if (searchWords.isEmpty() || limit <= 0) {
+            return found;
+        }
+
+        Scratch scratch = this.scratchPool.poll();
+        if (scratch == null) {
+            scratch = new Scratch(this.words.length, this.sites.length);
+        }
+
+        try {
+            // sites matching every word so far, and their total scores
+            int[] positions = null;
+            double[] scores = null;
+            int count = 0;
+
+            for (String searchWord : searchWords) {
+                scoreSites(searchWord, scratch);
+
+                if (positions == null) {
+                    count = scratch.touchedSiteCount;
+                    positions = Arrays.copyOf(scratch.touchedSites, count);
+                    scores = new double[count];
+
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = scratch.siteScores[positions[i]];
+                    }
+                } else {
+                    int kept = 0;
+
+                    for (int i = 0; i < count; i++) {
+                        double wordScore = scratch.siteScores[positions[i]];
+
+                        if (wordScore > 0) {
+                            positions[kept] = positions[i];
+                            scores[kept] = scores[i] + wordScore;
+                            kept++;
+                        }
+                    }
+                    count = kept;
+                }
+                scratch.clearSites();
+
+                if (count == 0) {
+                    return found;
+                }
+            }
+
+            for (int index : best(scores, positions, count, limit)) {
+                found.add(this.sites[positions[index]]);
+            }
+            return found;
+        } finally {
+            this.scratchPool.offer(scratch);
+        }
+    }
+
+    /**
+     * Scores every site containing a word which matches one word of a search, leaving the best score of each site's
+     * words in the scratch space.
+     *
+     * @param searchWord The word searched for.
+     * @param scratch Working space for the search.
+     */
+    private void scoreSites(String searchWord, Scratch scratch) {
+        // words starting with searchWord, which includes searchWord itself
+        int start = firstWordFrom(searchWord);
+        int end = start;
+        while (end < this.words.length && end < start + maxPrefixWords && this.words[end].startsWith(searchWord)) {
+            String word = this.words[end];
+            double score = word.length() == searchWord.length()
+                    ? exactScore
+                    : prefixScore * searchWord.length() / word.length();
+            addScore(scratch, end, score);
+            end++;
+        }
+
+        // a word found as it was typed is taken to be spelt as meant, so only words matching nothing have typos
+        if (end == start && searchWord.length() >= minTypoLength) {
+            addTypoScores(searchWord, searchWord.length() < twoTypoLength ? 1 : 2, scratch);
+        }
+    }
+
+    /**
+     * Scores every site containing a word within a number of typos of a word searched for. A typo is a character
+     * added, removed or changed.
+     *
+     * @param searchWord The word searched for.
+     * @param maxTypos The most typos a word may have.
+     * @param scratch Working space for the search.
+     */
+    private void addTypoScores(String searchWord, int maxTypos, Scratch scratch) {
+        String[] searchTrigrams = trigramsOf(searchWord);
+
+        for (String trigram : searchTrigrams) {
+            Integer trigramId = this.trigramIds.get(trigram);
+
+            if (trigramId != null) {
+                for (int wordIndex : this.trigramWords[trigramId]) {
+                    if (scratch.sharedTrigrams[wordIndex]++ == 0) {
+                        scratch.touchedWords[scratch.touchedWordCount++] = wordIndex;
+                    }
+                }
+            }
+        }
+
+        // each typo changes at most three trigrams, so words sharing fewer trigrams need more typos than allowed
+        int minShared = searchTrigrams.length - 3 * maxTypos;
+
+        for (int i = 0; i < scratch.touchedWordCount; i++) {
+            int wordIndex = scratch.touchedWords[i];
+
+            String word = this.words[wordIndex];
+
+            // likewise every typo changes at most three of the word's own trigrams
+            if (scratch.sharedTrigrams[wordIndex] >= Math.max(minShared, word.length() - 3 * maxTypos)) {
+                int typos = editDistance(searchWord, word, maxTypos, scratch);
+
+                if (typos <= maxTypos) {
+                    int length = Math.max(word.length(), searchWord.length());
+                    addScore(scratch, wordIndex, typoScore * (1.0 - (double) typos / (length + 1)));
+                }
+            }
+            scratch.sharedTrigrams[wordIndex] = 0;
+        }
+        scratch.touchedWordCount = 0;
+    }
+
+    /**
+     * Records a word's score against every site it appears in, keeping each site's best score.
+     *
+     * @param scratch Working space for the search, holding the best score of each site so far.
+     * @param wordIndex The word's index.
+     * @param score The word's score, greater than zero.
+     */
+    private void addScore(Scratch scratch, int wordIndex, double score) {
+        for (int position : this.wordSites[wordIndex]) {
+            double siteScore = scratch.siteScores[position];
+
+            if (siteScore == 0) {
+                scratch.touchedSites[scratch.touchedSiteCount++] = position;
+            }
+            if (score > siteScore) {
+                scratch.siteScores[position] = score;
+            }
+        }
+    }
+
+    /**
+     * Picks the highest scores, breaking ties by site position.
+     *
+     * @param scores The scores.
+     * @param positions The position of the site with each score.
+     * @param count The number of scores.
+     * @param limit The most scores to pick.
+     * @return Indexes of up to limit of the highest scores, highest first.
+     */
+    private static List<Integer> best(double[] scores, int[] positions, int count, int limit) {
+        Comparator<Integer> worstFirst = (first, second) -> {
+            int byScore = Double.compare(scores[first], scores[second]);
+            return byScore != 0 ? byScore : Integer.compare(positions[second], positions[first]);
+        };
+        PriorityQueue<Integer> kept = new PriorityQueue<>(worstFirst);
+
+        for (int i = 0; i < count; i++) {
+            if (kept.size() < limit) {
+                kept.add(i);
+            } else if (worstFirst.compare(i, kept.peek()) > 0) {
+                kept.poll();
+                kept.add(i);
+            }
+        }
+
+        ArrayList<Integer> indexes = new ArrayList<>(kept);
+        indexes.sort(worstFirst.reversed());
+        return indexes;
+    }
+
+    /**
+     * Finds the first word in the dictionary which is not before a word.
+     *
+     * @param word The word.
+     * @return The index of the first word not before it, or the number of words if there is none.
+     */
+    private int firstWordFrom(String word) {
+        int index = Arrays.binarySearch(this.words, word);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Counts the typos between two words, stopping early once there are more than a limit. Only the characters
+     * within maxTypos places of each other are compared, as any other pairing needs more typos than the limit.
+     *
+     * @param first The first word.
+     * @param second The second word.
+     * @param maxTypos The limit.
+     * @param scratch Working space for the search.
+     * @return The number of characters which must be added, removed or changed to turn one word into the other, or
+     * maxTypos + 1 if there are more than maxTypos.
+     */
+    private static int editDistance(String first, String second, int maxTypos, Scratch scratch) {
+        int tooMany = maxTypos + 1;
+
+        if (Math.abs(first.length() - second.length()) > maxTypos) {
+            return tooMany;
+        }
+
+        int[] previous = scratch.previousRow(second.length() + 1);
+        int[] current = scratch.currentRow(second.length() + 1);
+
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = Math.min(j, tooMany);
+        }
+
+        for (int i = 1; i <= first.length(); i++) {
+            int from = Math.max(1, i - maxTypos);
+            int to = Math.min(second.length(), i + maxTypos);
+
+            current[from - 1] = from == 1 ? Math.min(i, tooMany) : tooMany;
+            int rowMin = current[from - 1];
+
+            for (int j = from; j <= to; j++) {
+                int change = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                int above = j <= i - 1 + maxTypos ? previous[j] : tooMany;
+                int typos = Math.min(Math.min(current[j - 1], above) + 1, previous[j - 1] + change);
+
+                current[j] = Math.min(typos, tooMany);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < second.length()) {
+                current[to + 1] = tooMany;
+            }
+
+            if (rowMin > maxTypos) {
+                return tooMany;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+            scratch.swapRows();
+        }
+        return previous[second.length()];
+    }
+
+    /**
+     * Gets the words of a site's name, suburb, street and postcode.
+     *
+     * @param testingSite The site.
+     * @return The site's words, in lower case.
+     */
+    private static List<String> wordsOf(FacilityTestingSite testingSite) {
+        ArrayList<String> siteWords = new ArrayList<>(tokenize(testingSite.getName()));
+        Address address = testingSite.getAddress();
+
+        if (address != null) {
+            siteWords.addAll(tokenize(address.getSuburb()));
+            siteWords.addAll(tokenize(address.getStreet()));
+            siteWords.addAll(tokenize(address.getPostcode()));
+        }
+        return siteWords;
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits.
+     *
+     * @param text The text, may be null.
+     * @return The words, in the order they appear.
+     */
+    private static List<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+
+        if (text == null) {
+            return tokens;
+        }
+
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Gets the trigrams of a word, with its start and end marked.
+     *
+     * @param word The word.
+     * @return The trigrams, in the order they appear. A trigram which appears twice is returned twice.
+     */
+    private static String[] trigramsOf(String word) {
+        String marked = boundary + word + boundary;
+        String[] trigrams = new String[marked.length() - 2];
+
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = marked.substring(i, i + 3);
+        }
+        return trigrams;
+    }
+
+    /**
+     * A growable list of ints, which does not box its values.
+     */
+    private static class IntList {
+
+        /**
+         * The values, followed by unused space.
+         */
+        private int[] values = new int[4];
+
+        /**
+         * The number of values.
+         */
+        private int size;
+
+        /**
+         * Adds a value, unless it is already the last value.
+         *
+         * @param value The value.
+         */
+        private void addIfNotLast(int value) {
+            if (this.size > 0 && this.values[this.size - 1] == value) {
+                return;
+            }
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+
+        /**
+         * Copies the values to an array.
+         *
+         * @return The values.
+         */
+        private int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+
+    /**
+     * Working space for one search at a time. Every count is left at zero between searches.
+     */
+    private static class Scratch {
+
+        /**
+         * Number of the searched word's trigrams in each word, indexed by the word's index.
+         */
+        private final int[] sharedTrigrams;
+
+        /**
+         * Indexes of the words sharing a trigram with the searched word.
+         */
+        private final int[] touchedWords;
+
+        /**
+         * Number of touchedWords in use.
+         */
+        private int touchedWordCount;
+
+        /**
+         * Rows of typo counts, reused by each comparison of two words.
+         */
+        private int[][] rows = {new int[16], new int[16]};
+
+        /**
+         * Best score of each site's words for the searched word, indexed by the site's position.
+         */
+        private final double[] siteScores;
+
+        /**
+         * Positions of the sites with a score.
+         */
+        private final int[] touchedSites;
+
+        /**
+         * Number of touchedSites in use.
+         */
+        private int touchedSiteCount;
+
+        /**
+         * Constructor.
+         *
+         * @param wordCount The number of words in the index.
+         * @param siteCount The number of sites in the index.
+         */
+        private Scratch(int wordCount, int siteCount) {
+            this.sharedTrigrams = new int[wordCount];
+            this.touchedWords = new int[wordCount];
+            this.siteScores = new double[siteCount];
+            this.touchedSites = new int[siteCount];
+        }
+
+        /**
+         * Gets the row of typo counts for the previous character, making it at least a length.
+         *
+         * @param length The length needed.
+         * @return The row.
+         */
+        private int[] previousRow(int length) {
+            if (this.rows[0].length < length) {
+                this.rows[0] = new int[length];
+            }
+            return this.rows[0];
+        }
+
+        /**
+         * Gets the row of typo counts for the current character, making it at least a length.
+         *
+         * @param length The length needed.
+         * @return The row.
+         */
+        private int[] currentRow(int length) {
+            if (this.rows[1].length < length) {
+                this.rows[1] = new int[length];
+            }
+            return this.rows[1];
+        }
+
+        /**
+         * Makes the current row the previous row.
+         */
+        private void swapRows() {
+            int[] swap = this.rows[0];
+            this.rows[0] = this.rows[1];
+            this.rows[1] = swap;
+        }
+
+        /**
+         * Clears every site's score.
+         */
+        private void clearSites() {
+            for (int i = 0; i < this.touchedSiteCount; i++) {
+                this.siteScores[this.touchedSites[i]] = 0;
+            }
+            this.touchedSiteCount = 0;
+        }
+    }
+}
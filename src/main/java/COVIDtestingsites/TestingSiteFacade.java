@@ -2,11 +2,19 @@ package COVIDtestingsites;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import endpoints.TestingSiteAPIEndpoint;
+import utils.SyncEngine;
+import utils.SyncTarget;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class TestingSiteFacade {
 
-    private static TestingSiteFacade instance;
+    private static volatile TestingSiteFacade instance;
 
     private static TestingSiteAPIEndpoint testingSiteEndpoint;
 
@@ -16,14 +24,22 @@ public class TestingSiteFacade {
         testingSiteEndpoint = new TestingSiteAPIEndpoint();
         testingSiteCollection = new FacilityTestingSiteCollection();
 
-        selfPopulateFromAPI();
+        // populate the testingSiteCollection, and keep it in sync with the API in the background
+        SyncEngine.getInstance().register(new TestingSiteSyncTarget());
     }
 
     public static TestingSiteFacade getInstance() {
-        if (instance == null) {
-            instance = new TestingSiteFacade();
+        TestingSiteFacade result = instance;
+        if (result == null) {
+            synchronized (TestingSiteFacade.class) {
+                result = instance;
+                if (result == null) {
+                    result = new TestingSiteFacade();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
     }
 
     public ArrayList<FacilityTestingSite> getFacilitiesBySuburb(String suburbName) {
@@ -38,21 +54,136 @@ public class TestingSiteFacade {
         return testingSiteCollection.searchId(id);
     }
 
-    private void selfPopulateFromAPI() {
-        try {
-            // pull all testing sites from the API
-            ObjectNode[] testingSiteNodes = testingSiteEndpoint.makeGETRequest();
+    public boolean checkSiteExists(String testingSiteId) {
+        return testingSiteCollection.checkSiteExists(testingSiteId);
+    }
 
-            // for each testing site, add it to the testingSiteCollection
-            for (ObjectNode testingSiteNode: testingSiteNodes) {
-                testingSiteCollection.addTestingSite(new FacilityTestingSite(testingSiteNode));
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage()); //FIXME: improve error handling
-        }
+    /**
+     * Finds the testing sites nearest to a location.
+     *
+     * @param latitude The location's latitude, in degrees.
+     * @param longitude The location's longitude, in degrees.
+     * @param count The number of sites to find.
+     * @param openNow Whether to only find sites which are open now.
+     * @return Up to count testing sites, nearest first.
+     */
+    public ArrayList<FacilityTestingSite> getNearestFacilities(double latitude, double longitude, int count,
+                                                               boolean openNow) {
+        LocalTime now = LocalTime.now();
+        return testingSiteCollection.searchNearest(latitude, longitude, count,
+                testingSite -> !openNow || testingSite.isOpenAt(now));
     }
 
-    public boolean checkSiteExists(String testingSiteId) {
-        return testingSiteCollection.checkSiteExists(testingSiteId);
+    /**
+     * Records a patient checking in at a testing site for their booking, so that their wait counts towards the
+     * site's estimated wait once their test is completed.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @param bookingId The patient's booking's unique ID.
+     * @param startTime The booking's start time, or null if not known.
+     */
+    public void checkIn(String testingSiteId, String bookingId, LocalDateTime startTime) {
+        WaitTimeEstimator.getInstance().recordCheckIn(testingSiteId, bookingId, startTime, Instant.now());
+    }
+
+    /**
+     * Records the test of a patient who checked in being completed, ending their wait at the testing site.
+     *
+     * @param bookingId The patient's booking's unique ID.
+     * @param completedAt When the test was completed.
+     */
+    public void recordTestCompleted(String bookingId, Instant completedAt) {
+        WaitTimeEstimator.getInstance().recordCompletion(bookingId, completedAt);
+    }
+
+    /**
+     * Gets the current estimated wait at a testing site, from the waits of the patients tested there recently.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @return The estimated wait, in whole minutes.
+     */
+    public long getEstimatedWaitMinutes(String testingSiteId) {
+        return TimeUnit.MILLISECONDS.toMinutes(WaitTimeEstimator.getInstance().getEstimatedWaitMillis(testingSiteId));
+    }
+
+    /**
+     * Finds the testing sites whose name, suburb, street or postcode best match some text. Words may be the start of
+     * a word, such as 'clay' for 'Clayton', or have a typo or two, such as 'claytn'.
+     *
+     * @param text The text, ignoring case.
+     * @param limit The most testing sites to find.
+     * @return Up to limit testing sites, best match first.
+     */
+    public ArrayList<FacilityTestingSite> searchFacilitiesByText(String text, int limit) {
+        return testingSiteCollection.searchText(text, limit);
+    }
+
+    /**
+     * Finds the testing sites which match every filter of a query.
+     *
+     * @param query The query.
+     * @return The matching testing sites, in the order the query asks for.
+     */
+    public ArrayList<FacilityTestingSite> searchFacilities(SiteQuery query) {
+        return testingSiteCollection.search(query);
+    }
+
+    /**
+     * Finds the testing sites within a distance of a location.
+     *
+     * @param latitude The location's latitude, in degrees.
+     * @param longitude The location's longitude, in degrees.
+     * @param radiusKm The distance, in kilometres.
+     * @return The testing sites within the distance, nearest first.
+     */
+    public ArrayList<FacilityTestingSite> getFacilitiesWithinRadius(double latitude, double longitude,
+                                                                    double radiusKm) {
+        return testingSiteCollection.searchWithinRadius(latitude, longitude, radiusKm);
+    }
+
+    /**
+     * Keeps the testingSiteCollection in sync with the testing sites on the API.
+     */
+    private static class TestingSiteSyncTarget implements SyncTarget<FacilityTestingSite> {
+
+        @Override
+        public String getName() {
+            return "testing-sites";
+        }
+
+        @Override
+        public String fetch(String etag, Consumer<ObjectNode> handler) throws Exception {
+            return testingSiteEndpoint.streamGETRequestIfChanged(etag, handler);
+        }
+
+        @Override
+        public FacilityTestingSite create(ObjectNode node) {
+            return new FacilityTestingSite(node);
+        }
+
+        @Override
+        public String idOf(FacilityTestingSite testingSite) {
+            return testingSite.getId();
+        }
+
+        @Override
+        public void upsert(FacilityTestingSite testingSite) {
+            testingSiteCollection.updateTestingSite(testingSite);
+        }
+
+        @Override
+        public void remove(String id) {
+            testingSiteCollection.deleteTestingSiteById(id);
+        }
+
+        @Override
+        public Collection<FacilityTestingSite> getAll() {
+            return testingSiteCollection.getAllTestingSites();
+        }
+
+        @Override
+        public ObjectNode toJson(FacilityTestingSite testingSite) {
+            return testingSite.toApiJson();
+        }
     }
 }
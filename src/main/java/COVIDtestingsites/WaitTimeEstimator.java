@@ -0,0 +1,279 @@
+package COVIDtestingsites;
+
+import utils.Settings;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Singleton class estimating how long patients are currently waiting at each testing site.
+ *
+ * A patient's wait runs from when they check in, or from their booked start time if they arrive early, until their
+ * test is completed. Each site keeps the waits of the tests completed within a recent window, with a running total,
+ * so each completion updates the site's estimate without going over the whole window, and reading an estimate is a
+ * single lookup.
+ */
+public class WaitTimeEstimator {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static volatile WaitTimeEstimator instance;
+
+    /**
+     * How long a completed test counts towards its site's estimate, in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * Estimate used for a site with no tests completed within the window, in milliseconds.
+     */
+    private final long defaultWaitMillis;
+
+    /**
+     * How long a check-in is kept while waiting for its test to be completed, in milliseconds.
+     */
+    private final long checkInExpiryMillis;
+
+    /**
+     * Patients who have checked in and whose test has not been completed, indexed by booking ID.
+     */
+    private final ConcurrentHashMap<String, CheckIn> checkIns;
+
+    /**
+     * Every check-in, in the order they were made, so that abandoned check-ins can be expired oldest first.
+     */
+    private final ConcurrentLinkedQueue<CheckIn> checkInOrder;
+
+    /**
+     * Recent waits at each testing site, indexed by testing site ID.
+     */
+    private final ConcurrentHashMap<String, SiteWaits> siteWaits;
+
+    /**
+     * Private constructor.
+     */
+    private WaitTimeEstimator() {
+        this.windowMillis = TimeUnit.MINUTES.toMillis(Math.max(1, Settings.getLong("WAIT_WINDOW_MINUTES", 60)));
+        this.defaultWaitMillis = TimeUnit.MINUTES.toMillis(Math.max(0, Settings.getLong("WAIT_DEFAULT_MINUTES", 5)));
+        this.checkInExpiryMillis =
+                TimeUnit.MINUTES.toMillis(Math.max(1, Settings.getLong("WAIT_CHECK_IN_EXPIRY_MINUTES", 240)));
+        this.checkIns = new ConcurrentHashMap<>();
+        this.checkInOrder = new ConcurrentLinkedQueue<>();
+        this.siteWaits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of WaitTimeEstimator.
+     */
+    public static WaitTimeEstimator getInstance() {
+        WaitTimeEstimator result = instance;
+        if (result == null) {
+            synchronized (WaitTimeEstimator.class) {
+                result = instance;
+                if (result == null) {
+                    result = new WaitTimeEstimator();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a patient checking in at a testing site.
+     *
+     * @param testingSiteId The testing site's unique ID. Check-ins with no testing site are ignored.
+     * @param bookingId The patient's booking's unique ID.
+     * @param startTime The booking's start time, or null if not known.
+     * @param checkedInAt When the patient checked in.
+     */
+    public void recordCheckIn(String testingSiteId, String bookingId, LocalDateTime startTime, Instant checkedInAt) {
+        if (testingSiteId == null || bookingId == null) {
+            return;
+        }
+
+        long checkedInMillis = checkedInAt.toEpochMilli();
+        long waitFromMillis = checkedInMillis;
+
+        // a patient who arrives before their booking waits from their booked start time
+        if (startTime != null) {
+            long startMillis = startTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            waitFromMillis = Math.max(waitFromMillis, startMillis);
+        }
+
+        CheckIn checkIn = new CheckIn(testingSiteId, bookingId, checkedInMillis, waitFromMillis);
+        this.checkIns.put(bookingId, checkIn);
+        this.checkInOrder.add(checkIn);
+
+        expireCheckIns(checkedInMillis);
+    }
+
+    /**
+     * Records the test of a patient who checked in being completed, updating their testing site's estimate. Tests of
+     * patients who did not check in are ignored.
+     *
+     * @param bookingId The patient's booking's unique ID.
+     * @param completedAt When the test was completed.
+     */
+    public void recordCompletion(String bookingId, Instant completedAt) {
+        if (bookingId == null) {
+            return;
+        }
+
+        CheckIn checkIn = this.checkIns.remove(bookingId);
+
+        if (checkIn == null) {
+            return;
+        }
+
+        long completedMillis = completedAt.toEpochMilli();
+        long waitMillis = Math.max(0, completedMillis - checkIn.waitFromMillis);
+
+        this.siteWaits.computeIfAbsent(checkIn.testingSiteId, id -> new SiteWaits())
+                .add(completedMillis, waitMillis, this.windowMillis);
+    }
+
+    /**
+     * Gets the current estimated wait at a testing site.
+     *
+     * @param testingSiteId The testing site's unique ID.
+     * @return The average wait of the tests completed within the window, in milliseconds, or the default estimate if
+     * there are none.
+     */
+    public long getEstimatedWaitMillis(String testingSiteId) {
+        SiteWaits waits = testingSiteId == null ? null : this.siteWaits.get(testingSiteId);
+
+        if (waits == null || System.currentTimeMillis() - waits.latestCompletionMillis > this.windowMillis) {
+            return this.defaultWaitMillis;
+        }
+        return waits.averageWaitMillis;
+    }
+
+    /**
+     * Forgets check-ins whose test has not been completed long after they were made, so that patients who leave
+     * without being tested do not build up.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch.
+     */
+    private void expireCheckIns(long nowMillis) {
+        CheckIn oldest = this.checkInOrder.peek();
+
+        while (oldest != null && nowMillis - oldest.checkedInMillis > this.checkInExpiryMillis) {
+            if (this.checkInOrder.remove(oldest)) {
+                // the patient may have checked in again since, which must be kept
+                this.checkIns.remove(oldest.bookingId, oldest);
+            }
+            oldest = this.checkInOrder.peek();
+        }
+    }
+
+    /**
+     * A patient who has checked in at a testing site.
+     */
+    private static class CheckIn {
+
+        /**
+         * The testing site's unique ID.
+         */
+        private final String testingSiteId;
+
+        /**
+         * The patient's booking's unique ID.
+         */
+        private final String bookingId;
+
+        /**
+         * When the patient checked in, in milliseconds since the epoch.
+         */
+        private final long checkedInMillis;
+
+        /**
+         * When the patient's wait started, in milliseconds since the epoch.
+         */
+        private final long waitFromMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param testingSiteId The testing site's unique ID.
+         * @param bookingId The patient's booking's unique ID.
+         * @param checkedInMillis When the patient checked in.
+         * @param waitFromMillis When the patient's wait started.
+         */
+        private CheckIn(String testingSiteId, String bookingId, long checkedInMillis, long waitFromMillis) {
+            this.testingSiteId = testingSiteId;
+            this.bookingId = bookingId;
+            this.checkedInMillis = checkedInMillis;
+            this.waitFromMillis = waitFromMillis;
+        }
+    }
+
+    /**
+     * The waits of the tests recently completed at one testing site.
+     */
+    private static class SiteWaits {
+
+        /**
+         * Guards the window. A ReentrantLock rather than synchronized, so that sessions on virtual threads do not pin
+         * their carrier thread while waiting for it.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Completion time and wait of each test in the window, in milliseconds, oldest first.
+         */
+        private final ArrayDeque<long[]> window = new ArrayDeque<>();
+
+        /**
+         * Sum of the waits in the window, in milliseconds.
+         */
+        private long totalWaitMillis;
+
+        /**
+         * Average of the waits in the window, in milliseconds.
+         */
+        private volatile long averageWaitMillis;
+
+        /**
+         * Most recent completion time in the window, in milliseconds since the epoch.
+         */
+        private volatile long latestCompletionMillis;
+
+        /**
+         * Adds a completed test's wait to the window, dropping the waits which have fallen out of it.
+         *
+         * @param completedMillis When the test was completed, in milliseconds since the epoch.
+         * @param waitMillis The patient's wait, in milliseconds.
+         * @param windowMillis How long a completed test stays in the window, in milliseconds.
+         */
+        private void add(long completedMillis, long waitMillis, long windowMillis) {
+            this.lock.lock();
+            try {
+                // a test reported long after later ones has already fallen out of the window
+                if (completedMillis < this.latestCompletionMillis - windowMillis) {
+                    return;
+                }
+
+                this.window.addLast(new long[] {completedMillis, waitMillis});
+                this.totalWaitMillis += waitMillis;
+                this.latestCompletionMillis = Math.max(this.latestCompletionMillis, completedMillis);
+
+                while (this.window.peekFirst()[0] < this.latestCompletionMillis - windowMillis) {
+                    this.totalWaitMillis -= this.window.removeFirst()[1];
+                }
+
+                this.averageWaitMillis = this.totalWaitMillis / this.window.size();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
@@ -5,7 +5,7 @@ import java.util.Iterator;
 import java.util.Map;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import utils.Json;
 
 /**
  * Abstract Class representing test data from FIT3077 API.
@@ -57,10 +57,6 @@ public abstract class Test {
      * Date the covid test is performed.
      */
     private Instant datePerformed;
-    /**
-     * Mapper is required for conversion of data to ObjectNodes.
-     */
-    private ObjectMapper mapper;
 
     /**
      * Constructor for manual creation of local Test.
@@ -76,8 +72,7 @@ public abstract class Test {
         this.healthCareWorkerId = healthCareWorkerId;
         this.result = TestResult.INITIATED;
         this.status = status;
-        this.mapper = new ObjectMapper();
-        this.additionalInfo = this.mapper.createObjectNode();
+        this.additionalInfo = Json.createObjectNode();
     }
 
     /**
@@ -92,8 +87,7 @@ public abstract class Test {
         this.result = TestResult.valueOf(covidTestNode.get("result").asText());
         this.status = TestStatus.valueOf(covidTestNode.get("status").asText());
         this.notes = covidTestNode.get("notes").asText();
-        this.additionalInfo = covidTestNode.get("additionalInfo").deepCopy();
-        this.mapper = new ObjectMapper();
+        this.additionalInfo = covidTestNode.get("additionalInfo");
     }
 
     /**
@@ -128,6 +122,15 @@ public abstract class Test {
         return this.additionalInfo.deepCopy();
     }
 
+    /**
+     * Reads one field of additionalInfo without copying the whole tree. The returned node must not be modified.
+     * @param field String, name of the field.
+     * @return JsonNode, the field's value, or a missing node if there is no such field.
+     */
+    public JsonNode getAdditionalInfoField(String field) {
+        return this.additionalInfo.path(field);
+    }
+
     /**
      * Setter for notes.
      * @param notes String
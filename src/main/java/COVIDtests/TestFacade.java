@@ -4,7 +4,7 @@ import endpoints.TestAPIEndpoint;
 
 public class TestFacade {
 
-    private static TestFacade instance;
+    private static volatile TestFacade instance;
 
     private static TestFactory testFactory;
 
@@ -16,10 +16,17 @@ public class TestFacade {
     }
 
     public static TestFacade getInstance() {
-        if (instance == null) {
-            instance = new TestFacade();
+        TestFacade result = instance;
+        if (result == null) {
+            synchronized (TestFacade.class) {
+                result = instance;
+                if (result == null) {
+                    result = new TestFacade();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
     }
 
     public Test createTest(String type, String patientId, String bookingId, String healthCareWorkerId, String notes) {
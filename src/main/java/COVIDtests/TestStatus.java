@@ -15,5 +15,24 @@ public enum TestStatus {
     /**
      * Test has been undertaken, results published.
      */
-    COMPLETED
+    COMPLETED;
+
+    /**
+     * All statuses, cached as values() copies its array on every call.
+     */
+    private static final TestStatus[] statuses = values();
+
+    /**
+     * Looks up a status by name without throwing, unlike valueOf.
+     * @param name String, the status' name, i.e. 'INITIATED'.
+     * @return TestStatus with that name, or null if there is none.
+     */
+    public static TestStatus fromString(String name) {
+        for (TestStatus status : statuses) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
 }
@@ -1,10 +1,7 @@
-import menus.ConcreteMenuFactory;
-import menus.Menu;
-import menus.MenuFactory;
-import users.User;
-import users.UserFacade;
+import bootstrap.FacadeBootstrapper;
+import server.Session;
+import server.SessionServer;
 import views.CommandLineView;
-import views.View;
 
 /**
  * Main driver class. Runs the program.
@@ -14,43 +11,19 @@ public class Main {
     /**
      * Runs the covid test registration system.
      *
-     * @param args Arguments to be passed to the system. None are required.
+     * @param args Arguments to be passed to the system. None are required. Passing --server hosts a session for each
+     *             connection to a local socket, rather than running a single session on the command line.
      * @throws Exception If an error occurs running the program
      */
     public static void main(String[] args) throws Exception {
 
-        View view = new CommandLineView();
+        // load users, bookings and testing sites while the user is entering their credentials
+        FacadeBootstrapper.getInstance().start();
 
-        view.displayString("Welcome to the COVID test registration system.");
-
-        User currentUser = performLogin(view);
-
-        // create the relevant type of menu for the current user, and pass control flow over to that menu
-        MenuFactory menuFactory = new ConcreteMenuFactory();
-        Menu menu = menuFactory.createMenu(currentUser.getClass().getSimpleName(), view);
-
-        menu.runMenu();
-
-        view.displayString("Program exited correctly. Thank you.");
-    }
-
-    private static User performLogin(View view) {
-
-        User currentUser;
-
-        do {
-            String userName = view.promptStringInput("your username");
-            String password = view.promptStringInput("your password");
-
-            currentUser = UserFacade.getInstance().login(userName, password);
-
-            if (currentUser == null) {
-                view.displayError();
-            }
-        } while (currentUser == null);
-
-        view.displayString("\nWelcome " + currentUser.getGivenName() + ".\n");
-
-        return currentUser;
+        if (args.length > 0 && args[0].equals("--server")) {
+            new SessionServer().run();
+        } else {
+            new Session(new CommandLineView()).run();
+        }
     }
 }
@@ -1,40 +1,26 @@
 package admininterface;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import COVIDbooking.Booking;
 import users.Receptionist;
-import users.UserFacade;
+import utils.Json;
 
 /**
  * Concrete class which will be responsible for notifying observers of a modify booking event. 
  */
 public class ModifyListener implements BookingEventListener {
 
-    /**
-     * Mapper for the creation of ObjectNodes.
-     */
-    private ObjectMapper mapper;
-
-    public ModifyListener() {
-        this.mapper = new ObjectMapper();
-    }
-
      /**
     * Concrete class which will notify observers of a delete booking event. 
     */
     @Override
     public void update(Receptionist admin, Booking booking) {
         // create a new message for modify
-        ObjectNode message = this.mapper.createObjectNode();
+        ObjectNode message = Json.createObjectNode();
         message.put("type", "modified");
         message.put("customerId", booking.getCustomerId());
-        // adding the message to the admin's messageList
-        admin.addMessage(message);
-
-        // updating the API
-        UserFacade.getInstance().updateUser(admin);
-        
+        // queue the message, to be added to the admin's messageList along with any others arriving shortly
+        NotificationBatcher.getInstance().addMessage(admin.getId(), message);
     }
 }
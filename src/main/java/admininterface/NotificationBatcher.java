@@ -0,0 +1,168 @@
+package admininterface;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import users.UserFacade;
+import utils.Settings;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class which coalesces booking notifications for the same receptionist.
+ *
+ * Rather than updating a receptionist on the API once per message, messages are held for a short window
+ * (NOTIFICATION_BATCH_WINDOW_MILLIS, 2000 by default) and then written in a single update. A receptionist's messages
+ * are written early if NOTIFICATION_BATCH_MAX_MESSAGES (100 by default) build up within the window. Only the
+ * receptionist's ID is held, and the receptionist is read when the batch is written, as they may have been replaced
+ * or have read their messages in the meantime.
+ */
+public class NotificationBatcher {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static NotificationBatcher instance;
+
+    /**
+     * How long messages are held before being written, in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * The number of messages for one receptionist which triggers an early write.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Messages waiting to be written, indexed by receptionist ID.
+     */
+    private final ConcurrentHashMap<String, PendingMessages> pending;
+
+    /**
+     * Runs the delayed writes.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Private constructor.
+     */
+    private NotificationBatcher() {
+        this.windowMillis = Math.max(0, Settings.getLong("NOTIFICATION_BATCH_WINDOW_MILLIS", 2000));
+        this.maxBatchSize = Math.max(1, Settings.getInt("NOTIFICATION_BATCH_MAX_MESSAGES", 100));
+        this.pending = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of NotificationBatcher.
+     */
+    public static synchronized NotificationBatcher getInstance() {
+        if (instance == null) {
+            instance = new NotificationBatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a message for a receptionist. The first message for a receptionist opens a new batch, which is written
+     * once the window has passed.
+     *
+     * @param receptionistId The unique ID of the receptionist to be notified.
+     * @param message The message to be added to their messageList.
+     */
+    public void addMessage(String receptionistId, ObjectNode message) {
+        boolean[] openedBatch = {false};
+        boolean[] batchFull = {false};
+
+        this.pending.compute(receptionistId, (id, batch) -> {
+            if (batch == null) {
+                batch = new PendingMessages();
+                openedBatch[0] = true;
+            }
+            batch.messages.add(message);
+            batchFull[0] = batch.messages.size() >= this.maxBatchSize;
+            return batch;
+        });
+
+        if (batchFull[0]) {
+            flush(receptionistId);
+        } else if (openedBatch[0]) {
+            try {
+                this.scheduler.schedule(() -> flush(receptionistId), this.windowMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // the scheduler has stopped, so write the message straight away
+                flush(receptionistId);
+            }
+        }
+    }
+
+    /**
+     * Writes all messages waiting for every receptionist.
+     */
+    public void flushAll() {
+        for (String receptionistId : new ArrayList<>(this.pending.keySet())) {
+            flush(receptionistId);
+        }
+    }
+
+    /**
+     * Writes all waiting messages, and stops the scheduled writes. Any later messages are written immediately.
+     */
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+        flushAll();
+    }
+
+    /**
+     * Gets the number of messages waiting to be written.
+     *
+     * @return The number of pending messages across all receptionists.
+     */
+    public int getPendingCount() {
+        int[] count = {0};
+
+        // read each batch under its map lock, as batches are only modified inside compute
+        for (String receptionistId : this.pending.keySet()) {
+            this.pending.computeIfPresent(receptionistId, (id, batch) -> {
+                count[0] += batch.messages.size();
+                return batch;
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Adds all waiting messages for a receptionist to their messageList, and updates them in a single call.
+     *
+     * @param receptionistId The receptionist's unique ID.
+     */
+    private void flush(String receptionistId) {
+        PendingMessages batch = this.pending.remove(receptionistId);
+
+        if (batch == null) {
+            return;
+        }
+
+        // appends to the receptionist as they are now, and updates the API
+        UserFacade.getInstance().addMessages(receptionistId, batch.messages);
+    }
+
+    /**
+     * Messages waiting to be written for a single receptionist.
+     */
+    private static class PendingMessages {
+
+        /**
+         * The messages, in the order they were added.
+         */
+        private final ArrayList<ObjectNode> messages = new ArrayList<>();
+    }
+}
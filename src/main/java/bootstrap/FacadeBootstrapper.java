@@ -0,0 +1,163 @@
+package bootstrap;
+
+import COVIDbooking.BookingFacade;
+import COVIDtestingsites.TestingSiteFacade;
+import endpoints.SharedHttpClient;
+import users.UserFacade;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class which loads the facades concurrently at startup, so that their data is ready by the time the user
+ * has logged in rather than being downloaded in the middle of a menu interaction.
+ */
+public class FacadeBootstrapper {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static FacadeBootstrapper instance;
+
+    /**
+     * Names of the facades loaded, in the order they are started.
+     */
+    private static final String[] facadeNames = {"UserFacade", "BookingFacade", "TestingSiteFacade"};
+
+    /**
+     * Released once every facade has finished loading.
+     */
+    private final CountDownLatch ready;
+
+    /**
+     * Time each facade took to load, in milliseconds, indexed by facade name.
+     */
+    private final ConcurrentHashMap<String, Long> loadTimesMillis;
+
+    /**
+     * Runs the facade loads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Whether the loads have been started.
+     */
+    private boolean started;
+
+    /**
+     * Private constructor.
+     */
+    private FacadeBootstrapper() {
+        this.ready = new CountDownLatch(facadeNames.length);
+        this.loadTimesMillis = new ConcurrentHashMap<>();
+        this.executor = Executors.newFixedThreadPool(facadeNames.length, runnable -> {
+            Thread thread = new Thread(runnable, "bootstrap");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of FacadeBootstrapper.
+     */
+    public static synchronized FacadeBootstrapper getInstance() {
+        if (instance == null) {
+            instance = new FacadeBootstrapper();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading every facade in the background. Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        this.started = true;
+
+        // create the shared HTTP client up front, rather than on whichever facade reaches it first
+        SharedHttpClient.getInstance();
+
+        load(facadeNames[0], UserFacade::getInstance);
+        load(facadeNames[1], BookingFacade::getInstance);
+        load(facadeNames[2], TestingSiteFacade::getInstance);
+
+        this.executor.shutdown();
+    }
+
+    /**
+     * Waits until every facade has finished loading.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void awaitReady() throws InterruptedException {
+        this.ready.await();
+    }
+
+    /**
+     * Waits until every facade has finished loading, or the timeout passes.
+     *
+     * @param timeout The longest time to wait.
+     * @param unit The unit of timeout.
+     * @return true if every facade has loaded, false if the timeout passed first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.ready.await(timeout, unit);
+    }
+
+    /**
+     * Checks whether every facade has finished loading.
+     *
+     * @return true if every facade has loaded, false otherwise.
+     */
+    public boolean isReady() {
+        return this.ready.getCount() == 0;
+    }
+
+    /**
+     * Gets the time each facade took to load. Facades which are still loading are not included.
+     *
+     * @return Load times in milliseconds, indexed by facade name, in the order the facades were started.
+     */
+    public Map<String, Long> getLoadTimesMillis() {
+        LinkedHashMap<String, Long> loadTimes = new LinkedHashMap<>();
+
+        for (String facadeName : facadeNames) {
+            Long loadTime = this.loadTimesMillis.get(facadeName);
+
+            if (loadTime != null) {
+                loadTimes.put(facadeName, loadTime);
+            }
+        }
+        return loadTimes;
+    }
+
+    /**
+     * Loads a facade in the background, recording how long it took.
+     *
+     * @param facadeName The facade's name.
+     * @param loader Creates the facade's singleton instance.
+     */
+    private void load(String facadeName, Runnable loader) {
+        this.executor.execute(() -> {
+            long startTime = System.nanoTime();
+
+            try {
+                loader.run();
+            } catch (Exception e) {
+                System.out.println(e.getMessage()); //FIXME: improve error handling here
+            } finally {
+                this.loadTimesMillis.put(facadeName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                this.ready.countDown();
+            }
+        });
+    }
+}
@@ -1,17 +1,27 @@
 package endpoints;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import utils.Json;
 
 /**
  * Abstract class representing an endpoint on the FIT3077 API (https://fit3077.com)
+ *
+ * Each request method has an *Async counterpart, which returns straight away and completes its future once the
+ * response has been received and parsed. The facades currently only use the blocking methods; the async methods are
+ * provided for callers which need to make several requests at once.
  */
 public abstract class APIEndpoint {
 
@@ -31,9 +41,9 @@ public abstract class APIEndpoint {
     protected String fullUrl;
 
     /**
-     * The HttpClient used for making HTTP requests to the API.
+     * ObjectReader used for parsing API responses into JSON trees.
      */
-    private HttpClient client;
+    private static final ObjectReader treeReader = Json.readerFor(JsonNode.class);
 
     /**
      * Constructor.
@@ -42,7 +52,19 @@ public abstract class APIEndpoint {
      */
     public APIEndpoint(String relativePath) {
         this.fullUrl = rootUrl + relativePath;
-        this.client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Creates a request builder for the given URL, with the authorization header and request timeout already set.
+     *
+     * @param url The full URL of the request.
+     * @return The HttpRequest.Builder for the request.
+     */
+    protected HttpRequest.Builder newRequestBuilder(String url) {
+        return HttpRequest
+                .newBuilder(URI.create(url))
+                .timeout(SharedHttpClient.getInstance().getRequestTimeout())
+                .setHeader("Authorization", myApiKey);
     }
 
     /**
@@ -53,21 +75,77 @@ public abstract class APIEndpoint {
      * @throws Exception If an error occurs while performing the GET request.
      */
     public ObjectNode[] makeGETRequest(ArrayList<String> params) throws Exception {
-        String urlWithParams = fullUrl + createParamString(params);
-
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(urlWithParams))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        return makeRequest(request);
+        return makeRequest(buildGETRequest(params));
     }
 
     public ObjectNode[] makeGETRequest() throws Exception {
         return makeGETRequest(new ArrayList<>());
     }
 
+    /**
+     * Makes a GET request to the API at this endpoint, passing each returned object to a handler as soon as it has
+     * been parsed, rather than collecting them all first. Only one object is held in memory at a time.
+     *
+     * @param params Parameters to be passed in the GET request. If none, are required, an empty ArrayList should be passed.
+     * @param handler Called with each object returned by the API, in order.
+     * @return The number of objects returned by the API.
+     * @throws Exception If an error occurs while performing the GET request.
+     */
+    public int streamGETRequest(ArrayList<String> params, Consumer<ObjectNode> handler) throws Exception {
+        return makeStreamingRequest(buildGETRequest(params), handler);
+    }
+
+    public int streamGETRequest(Consumer<ObjectNode> handler) throws Exception {
+        return streamGETRequest(new ArrayList<>(), handler);
+    }
+
+    /**
+     * Makes a conditional GET request to the API at this endpoint. Objects are streamed to the handler only if they
+     * have changed since the response with the given ETag, so nothing is downloaded when the API reports that they
+     * are unchanged. If the API does not support conditional requests, all objects are streamed.
+     *
+     * @param etag The ETag of a previous response, or null to fetch all objects.
+     * @param handler Called with each object returned by the API, in order.
+     * @return The ETag of the current objects, which equals etag if they are unchanged, or null if the API sent none.
+     * @throws Exception If an error occurs while performing the GET request.
+     */
+    public String streamGETRequestIfChanged(String etag, Consumer<ObjectNode> handler) throws Exception {
+        HttpRequest.Builder requestBuilder = newRequestBuilder(fullUrl).GET();
+
+        if (etag != null) {
+            requestBuilder.setHeader("If-None-Match", etag);
+        }
+
+        HttpRequest request = requestBuilder.build();
+
+        SharedHttpClient sharedClient = SharedHttpClient.getInstance();
+
+        HttpResponse<InputStream> response = sharedClient.getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        // 304 Not Modified, the objects are the same as in the previous response
+        if (response.statusCode() == 304) {
+            response.body().close();
+            return etag;
+        }
+
+        streamResponse(response.statusCode(), response.body(), handler);
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+
+    /**
+     * Makes a GET request to the API at this endpoint without blocking the calling thread.
+     *
+     * @param params Parameters to be passed in the GET request. If none, are required, an empty ArrayList should be passed.
+     * @return A future completing with a list of ObjectNodes, one for each object returned by the API.
+     */
+    public CompletableFuture<ObjectNode[]> makeGETRequestAsync(ArrayList<String> params) {
+        return makeRequestAsync(buildGETRequest(params));
+    }
+
+    public CompletableFuture<ObjectNode[]> makeGETRequestAsync() {
+        return makeGETRequestAsync(new ArrayList<>());
+    }
+
     /**
      * Makes a POST request to the API at this endpoint.
      *
@@ -76,14 +154,17 @@ public abstract class APIEndpoint {
      * @throws Exception If an error occurs when making the POST request.
      */
     public ObjectNode makePOSTRequest(String jsonString) throws Exception {
+        return makeRequest(buildPOSTRequest(jsonString))[0];
+    }
 
-        HttpRequest request = HttpRequest.newBuilder(URI.create(fullUrl))
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonString))
-                .build();
-
-        return makeRequest(request)[0];
+    /**
+     * Makes a POST request to the API at this endpoint without blocking the calling thread.
+     *
+     * @param jsonString JSON payload to be passed in the POST API request.
+     * @return A future completing with the ObjectNode generated as a result of the API request.
+     */
+    public CompletableFuture<ObjectNode> makePOSTRequestAsync(String jsonString) {
+        return makeRequestAsync(buildPOSTRequest(jsonString)).thenApply(APIEndpoint::firstNode);
     }
 
     /**
@@ -95,22 +176,28 @@ public abstract class APIEndpoint {
      * @throws Exception If an error occurs while performing the GET request.
      */
     public ObjectNode makeGETRequestByID(String id, ArrayList<String> params) throws Exception {
-        String urlWithID = fullUrl + "/" + id;
-        String urlWithParams = urlWithID + createParamString(params);
-
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(urlWithParams))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        return makeRequest(request)[0];
+        return makeRequest(buildGETRequestByID(id, params))[0];
     }
 
     public ObjectNode makeGETRequestByID(String id) throws Exception {
         return makeGETRequestByID(id, new ArrayList<>());
     }
 
+    /**
+     * Makes a GET request to the API at this endpoint, specifying the ID, without blocking the calling thread.
+     *
+     * @param id The ID of the object to be found at this endpoint.
+     * @param params Parameters to be passed in the GET request. If none, are required, an empty ArrayList should be passed.
+     * @return A future completing with the ObjectNode found by the API request.
+     */
+    public CompletableFuture<ObjectNode> makeGETRequestByIDAsync(String id, ArrayList<String> params) {
+        return makeRequestAsync(buildGETRequestByID(id, params)).thenApply(APIEndpoint::firstNode);
+    }
+
+    public CompletableFuture<ObjectNode> makeGETRequestByIDAsync(String id) {
+        return makeGETRequestByIDAsync(id, new ArrayList<>());
+    }
+
     /**
      * Makes a PATCH request to the API at this endpoint, specifying the ID.
      *
@@ -120,15 +207,18 @@ public abstract class APIEndpoint {
      * @throws Exception If an error occurs while performing the PATCH request.
      */
     public ObjectNode makePATCHRequestByID(String id, String jsonString) throws Exception {
-        String urlWithID = fullUrl + "/" + id;
-
-        HttpRequest request = HttpRequest.newBuilder(URI.create(urlWithID))
-                .setHeader("Authorization", myApiKey)
-                .method("PATCH", HttpRequest.BodyPublishers.ofString(jsonString))
-                .header("Content-Type", "application/json")
-                .build();
+        return makeRequest(buildPATCHRequestByID(id, jsonString))[0];
+    }
 
-        return makeRequest(request)[0];
+    /**
+     * Makes a PATCH request to the API at this endpoint, specifying the ID, without blocking the calling thread.
+     *
+     * @param id The ID of the object to be modified at this endpoint.
+     * @param jsonString JSON payload to be passed in the PATCH API request.
+     * @return A future completing with the modified ObjectNode returned by the API request.
+     */
+    public CompletableFuture<ObjectNode> makePATCHRequestByIDAsync(String id, String jsonString) {
+        return makeRequestAsync(buildPATCHRequestByID(id, jsonString)).thenApply(APIEndpoint::firstNode);
     }
 
     /**
@@ -138,15 +228,90 @@ public abstract class APIEndpoint {
      * @throws Exception If an error occurs while performing the DELETE request.
      */
     public void makeDELETERequestByID(String id) throws Exception {
+        makeRequest(buildDELETERequestByID(id));
+    }
+
+    /**
+     * Makes a DELETE request to the API at this endpoint, specifying the ID, without blocking the calling thread.
+     *
+     * @param id The ID of the object to be deleted at this endpoint.
+     * @return A future completing once the object has been deleted.
+     */
+    public CompletableFuture<Void> makeDELETERequestByIDAsync(String id) {
+        return makeRequestAsync(buildDELETERequestByID(id)).thenApply(nodes -> null);
+    }
+
+    /**
+     * Builds a GET request for all objects at this endpoint.
+     *
+     * @param params Parameters to be passed in the GET request.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildGETRequest(ArrayList<String> params) {
+        String urlWithParams = fullUrl + createParamString(params);
+
+        return newRequestBuilder(urlWithParams)
+                .GET()
+                .build();
+    }
+
+    /**
+     * Builds a POST request creating a new object at this endpoint.
+     *
+     * @param jsonString JSON payload to be passed in the POST request.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildPOSTRequest(String jsonString) {
+        return newRequestBuilder(fullUrl)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonString))
+                .build();
+    }
+
+    /**
+     * Builds a GET request for a single object at this endpoint.
+     *
+     * @param id The ID of the object.
+     * @param params Parameters to be passed in the GET request.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildGETRequestByID(String id, ArrayList<String> params) {
         String urlWithID = fullUrl + "/" + id;
+        String urlWithParams = urlWithID + createParamString(params);
 
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(urlWithID))
-                .setHeader("Authorization", myApiKey)
-                .DELETE()
+        return newRequestBuilder(urlWithParams)
+                .GET()
                 .build();
+    }
 
-        makeRequest(request);
+    /**
+     * Builds a PATCH request modifying a single object at this endpoint.
+     *
+     * @param id The ID of the object.
+     * @param jsonString JSON payload to be passed in the PATCH request.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildPATCHRequestByID(String id, String jsonString) {
+        String urlWithID = fullUrl + "/" + id;
+
+        return newRequestBuilder(urlWithID)
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(jsonString))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    /**
+     * Builds a DELETE request for a single object at this endpoint.
+     *
+     * @param id The ID of the object.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildDELETERequestByID(String id) {
+        String urlWithID = fullUrl + "/" + id;
+
+        return newRequestBuilder(urlWithID)
+                .DELETE()
+                .build();
     }
 
     /**
@@ -158,40 +323,170 @@ public abstract class APIEndpoint {
      */
     protected ObjectNode[] makeRequest(HttpRequest request) throws Exception {
 
-        this.client = HttpClient.newHttpClient();
+        SharedHttpClient sharedClient = SharedHttpClient.getInstance();
+
+        // send the request, and parse the response as it arrives rather than buffering it
+        HttpResponse<InputStream> response = sharedClient.getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        return parseResponse(response.statusCode(), response.body());
+    }
+
+    /**
+     * Executes a given HttpRequest without blocking the calling thread.
+     * If the request fails, the returned future completes exceptionally with the cause (i.e. an EndpointException).
+     * The body is received in full before it is parsed, so parsing never waits on the network and does not hold up
+     * the HttpClient's threads.
+     *
+     * @param request The HttpRequest to be executed.
+     * @return A future completing with the ObjectNodes returned from the API.
+     */
+    protected CompletableFuture<ObjectNode[]> makeRequestAsync(HttpRequest request) {
+
+        SharedHttpClient sharedClient = SharedHttpClient.getInstance();
+
+        return sharedClient.getClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    try {
+                        return parseResponse(response.statusCode(), new ByteArrayInputStream(response.body()));
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Executes a given HttpRequest, passing each object sent back from the API to a handler as it is parsed.
+     *
+     * @param request The HttpRequest to be executed.
+     * @param handler Called with each object returned by the API, in order.
+     * @return The number of objects returned from the API.
+     * @throws Exception If an error occurs while making the API request.
+     */
+    protected int makeStreamingRequest(HttpRequest request, Consumer<ObjectNode> handler) throws Exception {
+
+        SharedHttpClient sharedClient = SharedHttpClient.getInstance();
 
-        // send the response
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> response = sharedClient.getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
 
-        // parse the response into ObjectNodes, and return a list of them
-        ObjectNode[] jsonNodes = new ObjectNode[1];
+        return Math.max(0, streamResponse(response.statusCode(), response.body(), handler));
+    }
 
-        int statusCode = response.statusCode();
+    /**
+     * Parses the body of an API response into ObjectNodes in a single pass, throwing if the API reported an error.
+     *
+     * @param statusCode The HTTP status code of the response.
+     * @param body The body of the response. It is closed once parsed.
+     * @return A list of ObjectNodes representing the objects returned from the API, or null if none were returned.
+     * @throws Exception If the response could not be parsed, or if the API reported an error.
+     */
+    private ObjectNode[] parseResponse(int statusCode, InputStream body) throws Exception {
+        ArrayList<ObjectNode> jsonNodes = new ArrayList<>();
 
         // if the request was successful but nothing was returned
-        if ((statusCode == 200 || statusCode == 201) && Objects.equals(response.body(), "")) {
+        if (streamResponse(statusCode, body, jsonNodes::add) < 0) {
             return null;
         }
 
-        try {
-            // handle case where multiple objects are returned
-            jsonNodes = new ObjectMapper().readValue(response.body(), ObjectNode[].class);
-        } catch (MismatchedInputException e) {
-            // handle case where only one object is returned
-            jsonNodes[0] = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-        }
+        return jsonNodes.toArray(new ObjectNode[0]);
+    }
 
-        // if an invalid request was made, throw an exception
-        if (statusCode != 200 && statusCode != 201) {
-            try {
-                throw new EndpointException(jsonNodes[0].get("message").get(0).textValue());
+    /**
+     * Parses the body of an API response one object at a time, passing each to a handler, and throwing if the API
+     * reported an error. Whether one object or a list of objects was returned is decided from the first token.
+     *
+     * @param statusCode The HTTP status code of the response.
+     * @param body The body of the response. It is closed once parsed.
+     * @param handler Called with each object returned by the API, in order.
+     * @return The number of objects returned from the API, or -1 if the body was empty.
+     * @throws Exception If the response could not be parsed, or if the API reported an error.
+     */
+    private int streamResponse(int statusCode, InputStream body, Consumer<ObjectNode> handler) throws Exception {
+
+        try (JsonParser parser = Json.getMapper().getFactory().createParser(body)) {
+            JsonToken firstToken = parser.nextToken();
+
+            // if an invalid request was made, throw an exception
+            if (statusCode != 200 && statusCode != 201) {
+                JsonNode errorNode = firstToken == null ? null : treeReader.readTree(parser);
+                throw createEndpointException(statusCode, errorNode);
             }
-            catch (Exception e) {
-                throw new EndpointException(jsonNodes[0].get("message").textValue());
+
+            // if the request was successful but nothing was returned
+            if (firstToken == null) {
+                return -1;
             }
+
+            if (firstToken != JsonToken.START_ARRAY) {
+                // handle case where only one object is returned
+                handler.accept(readObject(parser));
+                return 1;
+            }
+
+            // handle case where multiple objects are returned, handing each over before reading the next
+            int count = 0;
+            JsonToken token = parser.nextToken();
+
+            while (token != JsonToken.END_ARRAY) {
+                handler.accept(readObject(parser));
+                count++;
+                token = parser.nextToken();
+            }
+            return count;
         }
+    }
 
-        return jsonNodes;
+    /**
+     * Reads the JSON value starting at the parser's current token, which the API should only ever return as an object.
+     *
+     * @param parser The parser, positioned at the first token of the value.
+     * @return The object.
+     * @throws Exception If the value could not be parsed, or is not an object.
+     */
+    private ObjectNode readObject(JsonParser parser) throws Exception {
+        JsonNode node = treeReader.readTree(parser);
+
+        if (node == null || !node.isObject()) {
+            String nodeType = node == null ? "nothing" : node.getNodeType().toString().toLowerCase();
+            throw new EndpointException("Expected an object in the response, but found " + nodeType + ".");
+        }
+        return (ObjectNode) node;
+    }
+
+    /**
+     * Creates an EndpointException from the error object returned by the API.
+     *
+     * @param statusCode The HTTP status code of the response.
+     * @param errorNode The object returned by the API. May be null.
+     * @return The EndpointException describing the error.
+     */
+    private EndpointException createEndpointException(int statusCode, JsonNode errorNode) {
+        String defaultMessage = "Request failed with status code " + statusCode + ".";
+
+        if (errorNode == null) {
+            return new EndpointException(defaultMessage);
+        }
+
+        JsonNode message = errorNode.path("message");
+
+        // the API returns either a single message, or a list of them
+        if (message.isArray()) {
+            message = message.path(0);
+        }
+        return new EndpointException(message.asText(defaultMessage));
+    }
+
+    /**
+     * Gets the first of a list of ObjectNodes returned by the API.
+     *
+     * @param nodes The ObjectNodes returned by the API. May be null.
+     * @return The first ObjectNode, or null if there are none.
+     */
+    protected static ObjectNode firstNode(ObjectNode[] nodes) {
+        if (nodes == null || nodes.length == 0) {
+            return null;
+        }
+        return nodes[0];
     }
 
     /**
@@ -9,10 +9,11 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.net.URI;
 import java.net.http.HttpRequest;
 import java.util.Iterator;
 import java.util.Map;
@@ -32,6 +33,14 @@ public class PhotoAPIEndpoint extends APIEndpoint {
      */
     private static final String contentUploadSuffix = "/content-upload";
 
+    /**
+     * Pooled Apache HttpClient shared by all PhotoAPIEndpoints, used for multipart uploads which java.net.http
+     * does not support.
+     */
+    private static final CloseableHttpClient uploadClient = HttpClients.custom()
+            .setConnectionManager(new PoolingHttpClientConnectionManager())
+            .build();
+
     /**
      * Constructor.
      */
@@ -49,9 +58,7 @@ public class PhotoAPIEndpoint extends APIEndpoint {
     public ObjectNode getContentAccessInfoByID(String id) throws Exception {
         String contentAccessUrl = fullUrl + "/" + id + contentAccessSuffix;
 
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(contentAccessUrl))
-                .setHeader("Authorization", myApiKey)
+        HttpRequest request = newRequestBuilder(contentAccessUrl)
                 .GET()
                 .build();
 
@@ -73,8 +80,7 @@ public class PhotoAPIEndpoint extends APIEndpoint {
                 "\"fileName\":\"" + fileName + "\"" +
                 "}";
 
-        HttpRequest request = HttpRequest.newBuilder(URI.create(contentUploadUrl))
-                .setHeader("Authorization", myApiKey)
+        HttpRequest request = newRequestBuilder(contentUploadUrl)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(jsonString))
                 .build();
@@ -112,15 +118,18 @@ public class PhotoAPIEndpoint extends APIEndpoint {
         // this code has been adapted from: https://stackoverflow.com/questions/1378920/how-can-i-make-a-multipart-form-data-post-request-using-java
         // last accessed: 29/04/2022
 
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpPost photoUploadRequest = new HttpPost(photoUploadUrl);
         photoUploadRequest.setHeader("Authorization", myApiKey);
 
         photoUploadRequest.setEntity(payload);
-        CloseableHttpResponse response = httpClient.execute(photoUploadRequest);
 
-        int statusCode = response.getStatusLine().getStatusCode();
-        HttpEntity entity = response.getEntity();
+        int statusCode;
+
+        // the response must be consumed and closed so that its connection is returned to the pool
+        try (CloseableHttpResponse response = uploadClient.execute(photoUploadRequest)) {
+            statusCode = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
+        }
 
         if (statusCode != 200 && statusCode != 201) {
             throw new EndpointException("Error uploading photo.");
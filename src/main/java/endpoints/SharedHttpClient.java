@@ -0,0 +1,95 @@
+package endpoints;
+
+import utils.Settings;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Singleton holding the one HttpClient shared by every APIEndpoint, so that connections (and their TLS sessions)
+ * to the FIT3077 API are kept alive and reused across requests instead of being set up again for each call.
+ * The client uses HTTP/1.1, as the JDK's pool size and keep-alive settings only apply to HTTP/1.1 connections.
+ *
+ * The client can be tuned through the following environment variables:
+ * HTTP_CONNECT_TIMEOUT_SECONDS, HTTP_REQUEST_TIMEOUT_SECONDS, HTTP_POOL_SIZE and HTTP_KEEPALIVE_SECONDS.
+ */
+public class SharedHttpClient {
+
+    /**
+     * Singleton instance of this class. Created eagerly, as every endpoint needs it.
+     */
+    private static final SharedHttpClient instance = new SharedHttpClient();
+
+    /**
+     * Time allowed for establishing a new connection.
+     */
+    private final Duration connectTimeout;
+
+    /**
+     * Time allowed for a request to receive its response.
+     */
+    private final Duration requestTimeout;
+
+    /**
+     * The shared HttpClient.
+     */
+    private final HttpClient client;
+
+    /**
+     * Private constructor.
+     */
+    private SharedHttpClient() {
+        this.connectTimeout = Duration.ofSeconds(Settings.getInt("HTTP_CONNECT_TIMEOUT_SECONDS", 10));
+        this.requestTimeout = Duration.ofSeconds(Settings.getInt("HTTP_REQUEST_TIMEOUT_SECONDS", 30));
+
+        int keepAliveSeconds = Settings.getInt("HTTP_KEEPALIVE_SECONDS", 300);
+
+        // the JDK client only reads its pool settings from system properties, once, when it is first loaded
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(Settings.getInt("HTTP_POOL_SIZE", 16)));
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(this.connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of SharedHttpClient.
+     */
+    public static SharedHttpClient getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the shared HttpClient.
+     *
+     * @return The HttpClient used for all API requests.
+     */
+    public HttpClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * Gets the timeout to be applied to each request.
+     *
+     * @return The request timeout.
+     */
+    public Duration getRequestTimeout() {
+        return this.requestTimeout;
+    }
+
+    /**
+     * Sets a system property, unless it has already been set (i.e. on the command line).
+     *
+     * @param key The property's name.
+     * @param value The property's value.
+     */
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
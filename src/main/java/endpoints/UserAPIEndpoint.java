@@ -1,8 +1,8 @@
 package endpoints;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import java.net.URI;
 import java.net.http.HttpRequest;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class representing the User endpoint of the FIT3077 API, located at https://fit3077.com/user
@@ -40,8 +40,7 @@ public class UserAPIEndpoint extends APIEndpoint {
     public ObjectNode makePUTRequestByID(String id, String jsonString) throws Exception {
         String urlWithID = fullUrl + "/" + id;
 
-        HttpRequest request = HttpRequest.newBuilder(URI.create(urlWithID))
-                .setHeader("Authorization", myApiKey)
+        HttpRequest request = newRequestBuilder(urlWithID)
                 .header("Content-Type", "application/json")
                 .PUT(HttpRequest.BodyPublishers.ofString(jsonString))
                 .build();
@@ -59,6 +58,54 @@ public class UserAPIEndpoint extends APIEndpoint {
      * @throws Exception If an error occurs while making the login request, including if the user credentials are invalid.
      */
     public String login(String userName, String password, boolean withJwt) throws Exception {
+        ObjectNode response = makeRequest(buildLoginRequest(userName, password, withJwt))[0];
+
+        return extractJwt(response, withJwt);
+    }
+
+    /**
+     * Validates a user's username and password without blocking the calling thread.
+     *
+     * @param userName The user's username
+     * @param password The user's password
+     * @param withJwt Whether a JWT should be requested from the login.
+     * @return A future completing with the JWT if it was requested, or null if it was not requested. Completes
+     * exceptionally if the user credentials are invalid.
+     */
+    public CompletableFuture<String> loginAsync(String userName, String password, boolean withJwt) {
+        return makeRequestAsync(buildLoginRequest(userName, password, withJwt))
+                .thenApply(nodes -> extractJwt(firstNode(nodes), withJwt));
+    }
+
+    /**
+     * Verifies that a given JWT is valid by checking it with the API.
+     *
+     * @param jwt The JWT to be checked.
+     * @throws Exception If an error occurs while making the token verification request.
+     */
+    public void verifyToken(String jwt) throws Exception {
+        makeRequest(buildVerifyTokenRequest(jwt));
+    }
+
+    /**
+     * Verifies that a given JWT is valid by checking it with the API, without blocking the calling thread.
+     *
+     * @param jwt The JWT to be checked.
+     * @return A future completing once the token has been verified. Completes exceptionally if it is invalid.
+     */
+    public CompletableFuture<Void> verifyTokenAsync(String jwt) {
+        return makeRequestAsync(buildVerifyTokenRequest(jwt)).thenApply(nodes -> null);
+    }
+
+    /**
+     * Builds a login request.
+     *
+     * @param userName The user's username
+     * @param password The user's password
+     * @param withJwt Whether a JWT should be requested from the login.
+     * @return The built HttpRequest.
+     */
+    private HttpRequest buildLoginRequest(String userName, String password, boolean withJwt) {
 
         // format the login JSON payload, add parameters
         String jsonString = "{" +
@@ -68,42 +115,44 @@ public class UserAPIEndpoint extends APIEndpoint {
 
         String urlWithParams = loginUrl + "?jwt=" + withJwt;
 
-        // execute the request
-        HttpRequest request = HttpRequest.newBuilder(URI.create(urlWithParams))
-                .setHeader("Authorization", myApiKey)
+        return newRequestBuilder(urlWithParams)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(jsonString))
                 .build();
-
-        ObjectNode response = makeRequest(request)[0];
-
-        String jwt = null;
-
-        if (withJwt) {
-           jwt = response.get("jwt").textValue();
-        }
-
-        return jwt;
     }
 
     /**
-     * Verifies that a given JWT is valid by checking it with the API.
+     * Builds a token verification request.
      *
      * @param jwt The JWT to be checked.
-     * @throws Exception If an error occurs while making the token verification request.
+     * @return The built HttpRequest.
      */
-    public void verifyToken(String jwt) throws Exception {
+    private HttpRequest buildVerifyTokenRequest(String jwt) {
 
         String jsonString = "{" +
                 "\"jwt\":\"" + jwt + "\"" +
                 "}";
 
-        HttpRequest request = HttpRequest.newBuilder(URI.create(verifyTokenUrl))
-                .setHeader("Authorization", myApiKey)
+        return newRequestBuilder(verifyTokenUrl)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(jsonString))
                 .build();
+    }
 
-        makeRequest(request);
+    /**
+     * Reads the JWT out of a login response.
+     *
+     * @param response The ObjectNode returned by the login endpoint.
+     * @param withJwt Whether a JWT was requested.
+     * @return The JWT, or null if it was not requested.
+     */
+    private String extractJwt(ObjectNode response, boolean withJwt) {
+        String jwt = null;
+
+        if (withJwt) {
+           jwt = response.get("jwt").textValue();
+        }
+
+        return jwt;
     }
 }
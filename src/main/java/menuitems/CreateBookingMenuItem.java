@@ -7,6 +7,7 @@ import COVIDtests.*;
 import users.User;
 import users.UserFacade;
 import java.time.*;
+import java.util.List;
 import java.util.Objects;
 import views.View;
 
@@ -17,6 +18,11 @@ public class CreateBookingMenuItem implements MenuItem {
 
     private View view;
 
+    /**
+     * Number of available times suggested when the chosen time cannot be booked.
+     */
+    private static final int suggestedTimeCount = 5;
+
     /**
      * Constructor.
      */
@@ -44,6 +50,14 @@ public class CreateBookingMenuItem implements MenuItem {
 
         // create booking
         Booking booking = createBooking();
+
+        // another session may have taken the last place in the slot while this booking was being entered, or the
+        // booking may not have reached the web service
+        if (booking == null) {
+            view.displayString("The booking could not be created. That time may have just been booked out. "
+                    + "Please create the booking again.");
+            return;
+        }
         view.displayString("Booking successfully created.");
 
         // show user their PIN / QR Code / URL
@@ -176,6 +190,8 @@ public class CreateBookingMenuItem implements MenuItem {
         } else if (!isAvailable) {
             view.displayString("Time not available. Try again");
         }
+
+        displayNextAvailableTimes(appointmentDateTime, testingSiteId);
         return setBookingTime(testingSiteId);
     }
 
@@ -199,7 +215,11 @@ public class CreateBookingMenuItem implements MenuItem {
      * @return true if open, false otherwise
      */
     public boolean isFacilityOpen(LocalDateTime startTime, String testingSiteId) {
-        return true;
+        // home tests can be taken at any time
+        if (testingSiteId.equals("home")) {
+            return true;
+        }
+        return BookingFacade.getInstance().isFacilityOpen(testingSiteId, startTime);
     }
 
     /**
@@ -209,7 +229,33 @@ public class CreateBookingMenuItem implements MenuItem {
      * @return true if available, false otherwise
      */
     public boolean isTimeAvailable(LocalDateTime startTime, String testingSiteId) {
-        return true;
+        if (testingSiteId.equals("home")) {
+            return true;
+        }
+        return BookingFacade.getInstance().isTimeAvailable(testingSiteId, startTime);
+    }
+
+    /**
+     * Displays the next times a facility can take a booking, to help choose another time
+     * @param startTime the time the user asked for
+     * @param testingSiteId testing facility's unique ID
+     */
+    public void displayNextAvailableTimes(LocalDateTime startTime, String testingSiteId) {
+        if (testingSiteId.equals("home")) {
+            return;
+        }
+
+        // suggest times from the one asked for, unless it is in the past
+        LocalDateTime from = startTime.isAfter(LocalDateTime.now()) ? startTime : LocalDateTime.now();
+        List<LocalDateTime> availableTimes = BookingFacade.getInstance().getNextAvailableTimes(testingSiteId, from,
+                suggestedTimeCount);
+
+        if (!availableTimes.isEmpty()) {
+            view.displayString("Next available times:");
+            for (LocalDateTime availableTime : availableTimes) {
+                view.displayString(availableTime.toString());
+            }
+        }
     }
 
     /**
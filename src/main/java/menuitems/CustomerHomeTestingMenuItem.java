@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import endpoints.PhotoAPIEndpoint;
 import utils.RandomString;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import views.View;
 
@@ -17,6 +18,11 @@ public class CustomerHomeTestingMenuItem implements MenuItem{
 
     private View view;
 
+    /**
+     * Minutes to wait for the supervisor's comments before asking whether to keep waiting.
+     */
+    private static final long commentWaitMinutes = 1;
+
     /**
      * Constructor.
      */
@@ -52,13 +58,12 @@ public class CustomerHomeTestingMenuItem implements MenuItem{
         // 2. Generate a random code to verify both parties are connected. 
         String code = RandomString.main(6);
         view.displayString("Tell interviewer the following code: " + code);
-            // maybe change this to a setter.
-        ObjectNode additionalInfo = booking.getAdditionalInfo();
-        additionalInfo.put("code", code);
-        booking.setAdditionalInfo(additionalInfo);
+        // record the code on a copy of the booking, as the stored one is shared
+        Booking editedBooking = booking.copy();
+        editedBooking.setAdditionalInfoField("code", code);
 
         // patch to API
-        bookingFacade.updateBooking(booking);
+        bookingFacade.updateBooking(editedBooking);
 
         view.waitForEnter("Please perform your test, and press enter once you are ready to upload your result.");
 
@@ -86,7 +91,21 @@ public class CustomerHomeTestingMenuItem implements MenuItem{
             }
         } while (!view.promptTryAgain());
 
-        view.waitForEnter("Please wait until your supervisor has entered comments before continuing and then press enter.");
+        view.displayString("Please wait while your supervisor enters their comments...");
+
+        Booking updatedBooking = bookingFacade.awaitBooking(bookingId, CustomerHomeTestingMenuItem::hasComments,
+                commentWaitMinutes, TimeUnit.MINUTES);
+
+        while (updatedBooking == null) {
+            view.displayString("Your supervisor has not entered any comments yet.");
+
+            // supervisors may choose not to enter comments, so the patient can stop waiting
+            if (!view.promptTryAgain()) {
+                break;
+            }
+            updatedBooking = bookingFacade.awaitBooking(bookingId, CustomerHomeTestingMenuItem::hasComments,
+                    commentWaitMinutes, TimeUnit.MINUTES);
+        }
 
         // ask the user if they tested positive.
         String testedPositive;
@@ -99,24 +118,32 @@ public class CustomerHomeTestingMenuItem implements MenuItem{
             return;
         }
 
-        // sync the booking with the api
-        bookingFacade.syncBookingWithAPIById(bookingId);
-
         // if they did test positive, they get to see comments
         view.displayString("Supervisor comments:");
 
-        Booking updatedBooking = bookingFacade.getBookingById(bookingId);
-
-        JsonNode commentNode = updatedBooking.getAdditionalInfo().get("comments");
+        JsonNode commentNode = updatedBooking == null ? null : updatedBooking.getAdditionalInfo().get("comments");
 
-        for (int i=0; i<commentNode.size(); i++) {
-            String comment = commentNode.get(i).textValue();
-            view.displayString(comment);
+        if (commentNode == null || commentNode.size() == 0) {
+            view.displayString("No comments were entered.");
+        } else {
+            for (int i=0; i<commentNode.size(); i++) {
+                String comment = commentNode.get(i).textValue();
+                view.displayString(comment);
+            }
         }
 
         view.displayString("Please isolate and perform tests every alternate day until the test is negative.");
     }
 
+    /**
+     * Function checks whether the supervisor has entered comments for a booking
+     * @param booking the booking
+     * @return true if the booking has comments, false otherwise
+     */
+    private static boolean hasComments(Booking booking) {
+        return booking.getAdditionalInfo().has("comments");
+    }
+
     /**
      * Function returns home booking given a URL
      * @return home booking if URL valid, null otherwise
@@ -2,8 +2,8 @@ package menuitems;
 
 import COVIDbooking.Booking;
 import COVIDbooking.BookingFacade;
+import COVIDbooking.TimeSlotEngine;
 import COVIDtestingsites.TestingSiteFacade;
-import COVIDtests.TestStatus;
 import users.UserFacade;
 import views.View;
 import java.time.LocalDateTime;
@@ -102,9 +102,7 @@ public class EditBookingMenuItem implements MenuItem {
         }
 
         // confirms booking has not been administered
-        if (Objects.equals(booking.getAdditionalInfoField("Status"), TestStatus.INITIATED.toString())) {
-            return true;
-        } else if (Objects.equals(booking.getAdditionalInfoField("Status"), null)) {
+        if (booking.isActive()) {
             return true;
         } else {
             view.displayString("Cannot edit booking if test has been administered.");
@@ -204,6 +202,22 @@ public class EditBookingMenuItem implements MenuItem {
         }
     }
 
+    /**
+     * Function checks a facility is open at a given time, explaining why not otherwise. Whether the facility has room
+     * is only known once the booking is moved, as another session may take the last place in the meantime.
+     *
+     * @param testingSiteId testing facility's unique ID
+     * @param startTime appointment start time
+     * @return true if the facility is open at that time, false otherwise
+     */
+    public boolean isFacilityOpen(String testingSiteId, LocalDateTime startTime) {
+        if (!BookingFacade.getInstance().isFacilityOpen(testingSiteId, startTime)) {
+            view.displayString("Facility not open at that time.");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Function prompts and executes user's edit choice
      *
@@ -246,11 +260,19 @@ public class EditBookingMenuItem implements MenuItem {
             return editBookingTime(booking);
         }
 
+        // check the facility is open at the new time
+        if (!isFacilityOpen(booking.getTestingSiteId(), newStartTime)) {
+            return editBookingTime(booking);
+        }
+
+        // edit a copy, so the stored booking is unchanged if the new time is not available
+        Booking editedBooking = booking.copy();
+
         // store previous version
         String versions[] = {"timeVersion1", "timeVersion2", "timeVersion3"};
         String override = versions[0];
         for (Integer i = 1; i < versions.length; i++) {
-            String restoredStartTime = booking.getAdditionalInfoField(versions[i]);
+            String restoredStartTime = editedBooking.getAdditionalInfoField(versions[i]);
             if (restoredStartTime.equals("null")) {
                 override = versions[i];
                 break;
@@ -258,14 +280,17 @@ public class EditBookingMenuItem implements MenuItem {
         }
 
         // set new and previous versions
-        booking.setStartTime(newStartTime.toString());
-        booking.setAdditionalInfoField(override, booking.getStartTime());
+        editedBooking.setStartTime(newStartTime.toString());
+        editedBooking.setAdditionalInfoField(override, editedBooking.getStartTime());
 
         //capture timestamp of edit
-        String editTimestamp = updateTimestampOfEdit(booking);
+        String editTimestamp = updateTimestampOfEdit(editedBooking);
 
-        // patch
-        BookingFacade.getInstance().updateBooking(booking);
+        // move the booking to the new time if it has room, then patch
+        if (!BookingFacade.getInstance().rescheduleBooking(editedBooking)) {
+            view.displayString("Time not available at that facility.");
+            return editBookingTime(booking);
+        }
 
         return "Booking time changed at " + editTimestamp;
     }
@@ -284,11 +309,20 @@ public class EditBookingMenuItem implements MenuItem {
             newSiteInfo = getSiteInfo();
         } while (newSiteInfo == null);
 
+        // check the new facility is open at the booking's current time
+        LocalDateTime startTime = TimeSlotEngine.parseStartTime(booking.getStartTime());
+        if (startTime != null && !isFacilityOpen(newSiteInfo, startTime)) {
+            return "Booking venue not changed.";
+        }
+
+        // edit a copy, so the stored booking is unchanged if the new facility has no room
+        Booking editedBooking = booking.copy();
+
         // store previous version
         String versions[] = {"venueVersion1", "venueVersion2", "venueVersion3"};
         String override = versions[0];
         for (Integer i = 1; i < versions.length; i++) {
-            String restoredTestingSiteId = booking.getAdditionalInfoField(versions[i]);
+            String restoredTestingSiteId = editedBooking.getAdditionalInfoField(versions[i]);
             if (restoredTestingSiteId.equals("null")) {
                 override = versions[i];
                 break;
@@ -296,14 +330,17 @@ public class EditBookingMenuItem implements MenuItem {
         }
 
         // set new and previous versions
-        booking.setTestingSite(newSiteInfo);
-        booking.setAdditionalInfoField(override, booking.getTestingSiteId());
+        editedBooking.setTestingSite(newSiteInfo);
+        editedBooking.setAdditionalInfoField(override, editedBooking.getTestingSiteId());
 
         // capture timestamp of edit
-        String editTimestamp = updateTimestampOfEdit(booking);
+        String editTimestamp = updateTimestampOfEdit(editedBooking);
 
-        // patch
-        BookingFacade.getInstance().updateBooking(booking);
+        // move the booking to the new facility if it has room, then patch
+        if (!BookingFacade.getInstance().rescheduleBooking(editedBooking)) {
+            view.displayString("Time not available at that facility.");
+            return "Booking venue not changed.";
+        }
 
         return "Booking venue changed at " + editTimestamp;
     }
@@ -333,6 +370,9 @@ public class EditBookingMenuItem implements MenuItem {
         String typeMenuOptions[] = {"Select restoration field", "Venue", "Start Time"};
         Integer userSelection = view.createSubMenu(typeMenuOptions);
 
+        // edit a copy, so the stored booking is unchanged if the previous details are no longer available
+        Booking editedBooking = booking.copy();
+
 
         if (userSelection.equals(1)) {
             // venue
@@ -340,7 +380,7 @@ public class EditBookingMenuItem implements MenuItem {
             String venueMenuOptions[] = {"Select version", "venueVersion1", "venueVersion2", "venueVersion3"};
             userSelection = view.createSubMenu(venueMenuOptions);
 
-            String restoredTestingSiteId = booking.getAdditionalInfoField(venueMenuOptions[userSelection]);
+            String restoredTestingSiteId = editedBooking.getAdditionalInfoField(venueMenuOptions[userSelection]);
 
             // cannot restore if there were no previous modifications
             if (restoredTestingSiteId.equals("null")) {
@@ -348,8 +388,8 @@ public class EditBookingMenuItem implements MenuItem {
             }
 
             // save current venue under version#, then restore previous
-            booking.setAdditionalInfoField(venueMenuOptions[userSelection], booking.getTestingSiteId());
-            booking.setTestingSite(restoredTestingSiteId);
+            editedBooking.setAdditionalInfoField(venueMenuOptions[userSelection], editedBooking.getTestingSiteId());
+            editedBooking.setTestingSite(restoredTestingSiteId);
 
 
         } else if (userSelection.equals((2))) {
@@ -358,7 +398,7 @@ public class EditBookingMenuItem implements MenuItem {
             String timeMenuOptions[] = {"Select version", "timeVersion1", "timeVersion2", "timeVersion3"};
             userSelection = view.createSubMenu(timeMenuOptions);
 
-            String restoredStartTime = booking.getAdditionalInfoField(timeMenuOptions[userSelection]);
+            String restoredStartTime = editedBooking.getAdditionalInfoField(timeMenuOptions[userSelection]);
 
             // cannot restore if there were no previous modifications
             if (restoredStartTime.equals("null")) {
@@ -366,15 +406,17 @@ public class EditBookingMenuItem implements MenuItem {
             }
 
             // save current time under version#, then restore previous
-            booking.setAdditionalInfoField(timeMenuOptions[userSelection], booking.getStartTime());
-            booking.setStartTime(restoredStartTime);
+            editedBooking.setAdditionalInfoField(timeMenuOptions[userSelection], editedBooking.getStartTime());
+            editedBooking.setStartTime(restoredStartTime);
         }
 
         //capture timestamp of edit
-        String editTimestamp = updateTimestampOfEdit(booking);
+        String editTimestamp = updateTimestampOfEdit(editedBooking);
 
-        // patch
-        BookingFacade.getInstance().updateBooking(booking);
+        // move the booking back to its previous details if they have room, then patch
+        if (!BookingFacade.getInstance().rescheduleBooking(editedBooking)) {
+            return "Previous booking details not available at that facility.";
+        }
 
         return "Previous booking details restored at " + editTimestamp;
 
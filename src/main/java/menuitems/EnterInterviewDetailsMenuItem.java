@@ -2,6 +2,8 @@ package menuitems;
 
 import COVIDbooking.Booking;
 import COVIDbooking.BookingFacade;
+import COVIDbooking.TimeSlotEngine;
+import COVIDtestingsites.TestingSiteFacade;
 import COVIDtests.*;
 import users.User;
 import users.UserFacade;
@@ -67,6 +69,13 @@ public class EnterInterviewDetailsMenuItem implements MenuItem {
             return;
         }
 
+        // the patient has arrived, so their wait at the site starts now
+        TestingSiteFacade.getInstance().checkIn(
+                chosenBooking.getTestingSiteId(),
+                chosenBooking.getId(),
+                TimeSlotEngine.parseStartTime(chosenBooking.getStartTime())
+        );
+
         // retrieve information about test recommendation and current user
         String recommendation = retrieveTestRecommendation();
 
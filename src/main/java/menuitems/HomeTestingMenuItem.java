@@ -2,12 +2,13 @@ package menuitems;
 
 import COVIDbooking.Booking;
 import COVIDbooking.BookingFacade;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import views.View;
 import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import utils.Json;
 
 /**
  * MenuItem involving a healthcare worker joining a home testing video call.
@@ -16,6 +17,11 @@ public class HomeTestingMenuItem implements MenuItem {
 
     private View view;
 
+    /**
+     * Minutes to wait for the patient to join before asking whether to keep waiting.
+     */
+    private static final long joinWaitMinutes = 1;
+
     /**
      * Constructor.
      */
@@ -46,14 +52,34 @@ public class HomeTestingMenuItem implements MenuItem {
         String bookingId = booking.getId();
         BookingFacade bookingFacade = BookingFacade.getInstance();
 
-        // 2. Enter customer code
-        String code = null;
-        do{
-            // fetch the latest version of the booking from the API
-            bookingFacade.syncBookingWithAPIById(bookingId);
-            booking = bookingFacade.getBookingById(bookingId);
+        // 2. Wait for the patient to join and generate their code
+        view.displayString("Waiting for the patient to join...");
+
+        booking = bookingFacade.awaitBooking(bookingId, HomeTestingMenuItem::hasCode, joinWaitMinutes, TimeUnit.MINUTES);
+
+        while (booking == null) {
+            view.displayString("The patient has not joined yet.");
+
+            if (!view.promptTryAgain()) {
+                return;
+            }
+            booking = bookingFacade.awaitBooking(bookingId, HomeTestingMenuItem::hasCode, joinWaitMinutes,
+                    TimeUnit.MINUTES);
+        }
+
+        // 3. Enter customer code, which is checked against the latest version of the booking
+        String code = view.promptStringInput("code");
+
+        while (!code.equals(booking.getAdditionalInfoField("code"))) {
+            view.displayError();
             code = view.promptStringInput("code");
-        } while(!code.equals(booking.getAdditionalInfo().get("code").textValue()));
+
+            // the patient may have generated a new code in the meantime
+            Booking latestBooking = bookingFacade.getBookingById(bookingId);
+            if (latestBooking != null) {
+                booking = latestBooking;
+            }
+        }
 
         view.displayString("Both users are online! Begin testing procedures. \n");
 
@@ -83,21 +109,29 @@ public class HomeTestingMenuItem implements MenuItem {
             comments.add(comment);
         }
 
-        // add these comments to the additionalInfo field of the booking
-        ObjectNode additionalInfo = booking.getAdditionalInfo();
+        // add these comments to the additionalInfo field of a copy of the booking, as the stored one is shared
+        Booking editedBooking = booking.copy();
+        ObjectNode additionalInfo = editedBooking.getAdditionalInfo();
 
-        ObjectMapper mapper = new ObjectMapper();
-        ArrayNode commentsNode = mapper.createArrayNode();
+        ArrayNode commentsNode = Json.createArrayNode();
 
         for (int i=0; i<comments.size(); i++) {
             commentsNode.add(comments.get(i));
         }
 
         additionalInfo.set("comments", commentsNode);
-        booking.setAdditionalInfo(additionalInfo);
 
         // patch these comments to the booking object in the API
-        BookingFacade.getInstance().updateBooking(booking);
+        BookingFacade.getInstance().updateBooking(editedBooking);
+    }
+
+    /**
+     * Function checks whether the patient has generated their code for a booking
+     * @param booking the booking
+     * @return true if the booking has a code, false otherwise
+     */
+    private static boolean hasCode(Booking booking) {
+        return booking.getAdditionalInfoField("code") != null;
     }
 
     /**
@@ -66,7 +66,11 @@ public class ProvideRATKitMenuItem implements MenuItem {
      * @param booking home booking RAT kit is required for
      */
     public void provideRATKit(HomeBooking booking) {
-        if (booking.customerPicksUpRAT()) {
+        // record the pick up on a copy of the booking, as the stored one is shared
+        HomeBooking editedBooking = (HomeBooking) booking.copy();
+
+        if (editedBooking.customerPicksUpRAT()) {
+            BookingFacade.getInstance().updateBooking(editedBooking);
             view.displayString("RAT kit successfully provided to customer.");
         }
         else {
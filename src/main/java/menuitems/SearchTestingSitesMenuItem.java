@@ -1,8 +1,11 @@
 package menuitems;
 
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Objects;
 import COVIDtestingsites.FacilityTestingSite;
+import COVIDtestingsites.SiteQuery;
+import COVIDtestingsites.SiteSpatialIndex;
 import COVIDtestingsites.TestingSiteFacade;
 import views.View;
 
@@ -11,6 +14,11 @@ import views.View;
  */
 public class SearchTestingSitesMenuItem implements MenuItem {
 
+    /**
+     * Most testing sites shown for a search by name or address, or suggested when a suburb has none.
+     */
+    private static final int textResultLimit = 10;
+
     /**
      * The collection of all FacilityTestingSites.
      */
@@ -54,7 +62,9 @@ public class SearchTestingSitesMenuItem implements MenuItem {
     }
 
     private ArrayList<FacilityTestingSite> searchTestingSite() {
-        String[] menuOptions = {"Search Testing Sites by", "ID", "Suburb", "Type"};
+        String[] menuOptions = {"Search Testing Sites by", "ID", "Suburb", "Type", "Nearest to a location",
+                "Distance from a location", "Several filters",
+                "Name or address"};
         Integer userSelection = view.createSubMenu(menuOptions);
 
         if (userSelection.equals(1)) {
@@ -63,6 +73,14 @@ public class SearchTestingSitesMenuItem implements MenuItem {
              return searchBySuburb();
         } else if (userSelection.equals(3)) {
             return searchByType();
+        } else if (userSelection.equals(4)) {
+            return searchNearest();
+        } else if (userSelection.equals(5)) {
+            return searchWithinDistance();
+        } else if (userSelection.equals(6)) {
+            return searchByFilters();
+        } else if (userSelection.equals(7)) {
+            return searchByText();
         } else {
             view.displayError();
             return searchTestingSite();
@@ -90,8 +108,9 @@ public class SearchTestingSitesMenuItem implements MenuItem {
     }
 
     /**
-     * Searches for testing sites located in a given suburb. Prompts the user to enter a suburb name (case-sensitive),
-     * and prints info on all testing sites in that suburb.
+     * Searches for testing sites located in a given suburb. Prompts the user to enter a suburb name, and prints
+     * info on all testing sites in that suburb. If there are none, the closest matching sites are suggested instead,
+     * in case the suburb was misspelt.
      */
     private ArrayList<FacilityTestingSite> searchBySuburb() {
         String suburb = view.promptStringInput("Suburb");
@@ -99,7 +118,16 @@ public class SearchTestingSitesMenuItem implements MenuItem {
 
         if (testingSites.size() == 0) {
             view.displayString("No testing sites found in that suburb.");
-            return null;
+
+            ArrayList<FacilityTestingSite> suggestions =
+                    this.testingSiteFacade.searchFacilitiesByText(suburb, textResultLimit);
+
+            if (suggestions.size() == 0) {
+                return null;
+            }
+
+            view.displayString("Did you mean one of these?");
+            return suggestions;
         }
 
         return testingSites;
@@ -125,6 +153,165 @@ public class SearchTestingSitesMenuItem implements MenuItem {
         }
     }
 
+    /**
+     * Searches for the testing sites nearest to a location. Prompts the user to enter a location, the number of sites
+     * and whether the sites must be open now, and prints info on the nearest sites.
+     */
+    private ArrayList<FacilityTestingSite> searchNearest() {
+        double latitude = promptCoordinate("latitude", 90);
+        double longitude = promptCoordinate("longitude", 180);
+        int count = view.promptIntegerInput("Enter number of testing sites to find: ");
+
+        String[] menuOptions = {"Only show testing sites which are open now?", "Yes", "No"};
+        boolean openNow = view.createSubMenu(menuOptions).equals(1);
+
+        ArrayList<FacilityTestingSite> testingSites =
+                this.testingSiteFacade.getNearestFacilities(latitude, longitude, count, openNow);
+
+        if (testingSites.size() == 0) {
+            view.displayString("No testing sites found.");
+            return null;
+        }
+
+        printDistances(latitude, longitude, testingSites);
+        return testingSites;
+    }
+
+    /**
+     * Searches for testing sites within a distance of a location. Prompts the user to enter a location and a
+     * distance, and prints info on every site within that distance.
+     */
+    private ArrayList<FacilityTestingSite> searchWithinDistance() {
+        double latitude = promptCoordinate("latitude", 90);
+        double longitude = promptCoordinate("longitude", 180);
+        int radiusKm = view.promptIntegerInput("Enter distance in km: ");
+
+        ArrayList<FacilityTestingSite> testingSites =
+                this.testingSiteFacade.getFacilitiesWithinRadius(latitude, longitude, radiusKm);
+
+        if (testingSites.size() == 0) {
+            view.displayString("No testing sites found within that distance.");
+            return null;
+        }
+
+        printDistances(latitude, longitude, testingSites);
+        return testingSites;
+    }
+
+    /**
+     * Searches for testing sites matching several filters at once. Prompts the user to add filters until they are
+     * done, then to choose the order of the results, and prints info on every site matching all of the filters.
+     */
+    private ArrayList<FacilityTestingSite> searchByFilters() {
+        SiteQuery query = new SiteQuery();
+
+        String[] filterOptions = {"Add a filter", "Type", "Suburb", "State", "Postcode", "Open now",
+                "Done adding filters"};
+        String[] typeOptions = {"Enter type of testing site", "driveThrough", "walk-in", "gp", "clinic", "hospital",
+                "canBook"};
+
+        while (true) {
+            Integer option = view.createSubMenu(filterOptions);
+
+            if (option.equals(1)) {
+                query.requireType(typeOptions[view.createSubMenu(typeOptions)]);
+            } else if (option.equals(2)) {
+                query.setSuburb(view.promptStringInput("Suburb"));
+            } else if (option.equals(3)) {
+                query.setState(view.promptStringInput("State"));
+            } else if (option.equals(4)) {
+                query.setPostcode(view.promptStringInput("Postcode"));
+            } else if (option.equals(5)) {
+                query.setOpenAt(LocalTime.now());
+            } else if (option.equals(6)) {
+                break;
+            } else {
+                view.displayError();
+            }
+        }
+
+        String[] orderOptions = {"Order testing sites by", "Name", "Suburb", "Wait time", "No particular order"};
+        SiteQuery.Order[] orders = {SiteQuery.Order.NAME, SiteQuery.Order.SUBURB, SiteQuery.Order.WAIT_TIME,
+                SiteQuery.Order.NONE};
+        query.setOrder(orders[view.createSubMenu(orderOptions) - 1]);
+
+        ArrayList<FacilityTestingSite> testingSites = this.testingSiteFacade.searchFacilities(query);
+
+        if (testingSites.size() == 0) {
+            view.displayString("No testing sites found matching those filters.");
+            return null;
+        }
+
+        if (query.getOrder() == SiteQuery.Order.WAIT_TIME) {
+            printEstimatedWaits(testingSites);
+        }
+        return testingSites;
+    }
+
+    /**
+     * Searches for testing sites by name or address. Prompts the user to enter some text, and prints info on the
+     * sites whose name, suburb, street or postcode best match it, allowing for partial words and typos.
+     */
+    private ArrayList<FacilityTestingSite> searchByText() {
+        String text = view.promptStringInput("name, suburb, street or postcode");
+        ArrayList<FacilityTestingSite> testingSites =
+                this.testingSiteFacade.searchFacilitiesByText(text, textResultLimit);
+
+        if (testingSites.size() == 0) {
+            view.displayString("No testing sites found matching that.");
+            return null;
+        }
+
+        return testingSites;
+    }
+
+    /**
+     * Prompts the user for a latitude or longitude until a valid one is entered.
+     * @param name name of the coordinate, i.e. 'latitude'
+     * @param limit largest valid magnitude of the coordinate, in degrees
+     * @return the coordinate, in degrees
+     */
+    private double promptCoordinate(String name, double limit) {
+        while (true) {
+            try {
+                double coordinate = Double.parseDouble(view.promptStringInput(name + " (decimal degrees)"));
+
+                if (Math.abs(coordinate) <= limit) {
+                    return coordinate;
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the error below
+            }
+            view.displayError();
+        }
+    }
+
+    /**
+     * Prints how far each testing site is from a location, nearest first.
+     * @param latitude the location's latitude, in degrees
+     * @param longitude the location's longitude, in degrees
+     * @param testingSites the testing sites, nearest first
+     */
+    private void printDistances(double latitude, double longitude, ArrayList<FacilityTestingSite> testingSites) {
+        for (FacilityTestingSite testingSite : testingSites) {
+            Double distanceKm = SiteSpatialIndex.distanceKm(latitude, longitude, testingSite);
+            view.displayString(String.format("%s (%s): %.1f km away", testingSite.getName(), testingSite.getId(),
+                    distanceKm));
+        }
+    }
+
+    /**
+     * Prints the current estimated wait at each testing site.
+     * @param testingSites the testing sites
+     */
+    private void printEstimatedWaits(ArrayList<FacilityTestingSite> testingSites) {
+        for (FacilityTestingSite testingSite : testingSites) {
+            long waitMinutes = this.testingSiteFacade.getEstimatedWaitMinutes(testingSite.getId());
+            view.displayString(String.format("%s (%s): about %d minute(s) wait", testingSite.getName(),
+                    testingSite.getId(), waitMinutes));
+        }
+    }
+
     /**
      * Prints out testing site information to the user.
      * @param testingSite the testing site to be printed.
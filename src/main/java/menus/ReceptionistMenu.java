@@ -7,9 +7,7 @@ import menuitems.CheckBookingStatusMenuItem;
 import menuitems.CreateBookingMenuItem;
 import menuitems.EditBookingMenuItem;
 import menuitems.ProvideRATKitMenuItem;
-import users.Receptionist;
 import users.UserFacade;
-import views.CommandLineView;
 import views.View;
 
 /**
@@ -55,20 +53,17 @@ public class ReceptionistMenu extends Menu {
     }
 
     private void displayMessages() {
-        Receptionist currentAdmin = (Receptionist) UserFacade.getInstance().getUserByUserName(UserFacade.getInstance().getCurrentUser().getUserName());
-        ArrayNode messageList = currentAdmin.getMessageList();
+        // taking the messages empties the list, under the same lock the NotificationBatcher adds to it with
+        String receptionistId = UserFacade.getInstance().getCurrentUser().getId();
+        ArrayNode messageList = UserFacade.getInstance().takeMessages(receptionistId);
         if (messageList.size() > 0) {
             String customerId;
             String action;
-            View view = new CommandLineView();
             for (JsonNode message: messageList){
                 customerId = message.get("customerId").asText();
                 action = message.get("type").asText();
                 view.displayString("Booking for customer with ID " + customerId + " has been " + action + " at your testing site.");
             }
-
-            currentAdmin.emptyMessageList();
-            UserFacade.getInstance().updateUser(currentAdmin);
         }
 
 
@@ -0,0 +1,43 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs each session on its own platform thread. Idle threads are reused for later sessions.
+ */
+public class PlatformThreadSessionExecutor implements SessionExecutor {
+
+    /**
+     * Runs the sessions.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Number of threads started, used to name them.
+     */
+    private final AtomicInteger threadCount;
+
+    /**
+     * Constructor.
+     */
+    public PlatformThreadSessionExecutor() {
+        this.threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "session-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable session) {
+        this.executor.execute(session);
+    }
+
+    @Override
+    public String getDescription() {
+        return "platform threads";
+    }
+}
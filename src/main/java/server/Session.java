@@ -0,0 +1,91 @@
+package server;
+
+import bootstrap.FacadeBootstrapper;
+import menus.ConcreteMenuFactory;
+import menus.Menu;
+import menus.MenuFactory;
+import users.Auth;
+import users.User;
+import users.UserFacade;
+import views.View;
+
+/**
+ * A single user's interaction with the system, from logging in to exiting their menu.
+ * Each session has its own authentication state, while the data held by the facades is shared between sessions.
+ */
+public class Session {
+
+    /**
+     * The view the session reads from and prints to.
+     */
+    private final View view;
+
+    /**
+     * The session's authentication state.
+     */
+    private final Auth auth;
+
+    /**
+     * Constructor.
+     *
+     * @param view The view the session reads from and prints to.
+     */
+    public Session(View view) {
+        this.view = view;
+        this.auth = new Auth();
+    }
+
+    /**
+     * Runs the session on the calling thread, returning once the user has exited their menu.
+     *
+     * @throws Exception If an error occurs running the session.
+     */
+    public void run() throws Exception {
+        Auth.bind(this.auth);
+
+        try {
+            this.view.displayString("Welcome to the COVID test registration system.");
+
+            User currentUser = performLogin();
+
+            // the menus expect bookings and testing sites to be available straight away
+            FacadeBootstrapper.getInstance().awaitReady();
+
+            // create the relevant type of menu for the current user, and pass control flow over to that menu
+            MenuFactory menuFactory = new ConcreteMenuFactory();
+            Menu menu = menuFactory.createMenu(currentUser.getClass().getSimpleName(), this.view);
+
+            menu.runMenu();
+
+            this.view.displayString("Program exited correctly. Thank you.");
+        } finally {
+            this.auth.logout();
+            Auth.unbind();
+        }
+    }
+
+    /**
+     * Prompts for a username and password until the user has logged in.
+     *
+     * @return The logged-in user.
+     */
+    private User performLogin() {
+
+        User currentUser;
+
+        do {
+            String userName = this.view.promptStringInput("your username");
+            String password = this.view.promptStringInput("your password");
+
+            currentUser = UserFacade.getInstance().login(userName, password);
+
+            if (currentUser == null) {
+                this.view.displayError();
+            }
+        } while (currentUser == null);
+
+        this.view.displayString("\nWelcome " + currentUser.getGivenName() + ".\n");
+
+        return currentUser;
+    }
+}
@@ -0,0 +1,22 @@
+package server;
+
+/**
+ * Interface for running sessions. Sessions spend almost all of their time waiting for their user, so an
+ * implementation should keep the cost of each waiting session as low as it can.
+ */
+public interface SessionExecutor {
+
+    /**
+     * Starts running a session in the background.
+     *
+     * @param session The session to be run.
+     */
+    void execute(Runnable session);
+
+    /**
+     * Gets a short description of how sessions are run, i.e. 'virtual threads'.
+     *
+     * @return The description.
+     */
+    String getDescription();
+}
@@ -0,0 +1,110 @@
+package server;
+
+import utils.Settings;
+import views.CommandLineView;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hosts many sessions in one process, one for each connection to a local socket. Any line-based client, such as
+ * telnet or netcat, can be used as a terminal.
+ *
+ * The server listens on SERVER_HOST (127.0.0.1 by default) and SERVER_PORT (5023 by default), and runs each session
+ * on its own thread, so that the facades are loaded once and shared by every terminal. SESSION_THREADS chooses how
+ * sessions are run: 'virtual' or 'platform' threads, or 'auto' (the default) to use virtual threads where the
+ * running Java version provides them. Connections are not encrypted,
+ * so the server should only be exposed beyond the local machine through a secure tunnel.
+ */
+public class SessionServer {
+
+    /**
+     * Address the server listens on.
+     */
+    private final String host;
+
+    /**
+     * Port the server listens on.
+     */
+    private final int port;
+
+    /**
+     * Runs the sessions.
+     */
+    private final SessionExecutor executor;
+
+    /**
+     * Constructor, running sessions as chosen by SESSION_THREADS.
+     */
+    public SessionServer() {
+        this(createSessionExecutor());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor Runs the sessions.
+     */
+    public SessionServer(SessionExecutor executor) {
+        this.host = Settings.getString("SERVER_HOST", "127.0.0.1");
+        this.port = Settings.getInt("SERVER_PORT", 5023);
+        this.executor = executor;
+    }
+
+    /**
+     * Creates the executor chosen by SESSION_THREADS, falling back to platform threads if virtual threads were
+     * chosen but are not available.
+     *
+     * @return The executor.
+     */
+    private static SessionExecutor createSessionExecutor() {
+        String sessionThreads = Settings.getString("SESSION_THREADS", "auto");
+
+        if (!sessionThreads.equals("platform")) {
+            SessionExecutor virtualThreads = VirtualThreadSessionExecutor.create();
+
+            if (virtualThreads != null) {
+                return virtualThreads;
+            }
+            if (sessionThreads.equals("virtual")) {
+                System.out.println("Virtual threads are not available, so sessions will run on platform threads.");
+            }
+        }
+        return new PlatformThreadSessionExecutor();
+    }
+
+    /**
+     * Accepts connections until the process is stopped, starting a session for each.
+     *
+     * @throws Exception If the server socket cannot be opened.
+     */
+    public void run() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(this.port, 0, InetAddress.getByName(this.host))) {
+            System.out.println("Accepting sessions on " + this.host + ":" + this.port + ", running on "
+                    + this.executor.getDescription() + ".");
+
+            while (true) {
+                Socket socket = serverSocket.accept();
+                this.executor.execute(() -> serve(socket));
+            }
+        }
+    }
+
+    /**
+     * Runs a session over a connection, closing the connection once the session ends.
+     *
+     * @param socket The connection.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            Session session = new Session(new CommandLineView(socket.getInputStream(), out));
+
+            session.run();
+        } catch (Exception e) {
+            System.out.println(e.getMessage()); //FIXME: improve error handling here
+        }
+    }
+}
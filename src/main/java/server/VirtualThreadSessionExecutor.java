@@ -0,0 +1,53 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs each session on its own virtual thread, so that thousands of idle sessions can be held open cheaply.
+ *
+ * The project targets Java 11, which has no virtual threads, so the executor is looked up reflectively and is only
+ * available when running on a Java version which provides it.
+ */
+public class VirtualThreadSessionExecutor implements SessionExecutor {
+
+    /**
+     * Runs the sessions.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Private constructor.
+     *
+     * @param executor The virtual thread per task executor.
+     */
+    private VirtualThreadSessionExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a VirtualThreadSessionExecutor, if virtual threads are available.
+     *
+     * @return The created executor, or null if the running Java version has no virtual threads.
+     */
+    public static VirtualThreadSessionExecutor create() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new VirtualThreadSessionExecutor((ExecutorService) factory.invoke(null));
+        } catch (Exception e) {
+            // no such method before Java 19, and the method throws when virtual threads are a disabled preview
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable session) {
+        this.executor.execute(session);
+    }
+
+    @Override
+    public String getDescription() {
+        return "virtual threads";
+    }
+}
@@ -1,59 +1,94 @@
 package users;
 
 /**
- * Singleton class storing the current authentication state of the application.
+ * Class storing the authentication state of a session.
+ * Each session binds its own Auth to the thread running it, so that several users can be logged in at once. Threads
+ * with no session bound share a single default Auth, which is used when the system runs one session on the command
+ * line.
  */
 public class Auth {
 
     /**
-     * Current singleton instance of the Auth class.
+     * Default instance of the Auth class, used by threads with no session bound.
      */
-    private static Auth instance = null;
+    private static volatile Auth instance;
 
     /**
-     * The currently logged-in user of the system.
+     * Auth of the session running on the current thread, if any.
      */
-    private static User currentUser;
+    private static final ThreadLocal<Auth> sessionInstance = new ThreadLocal<>();
+
+    /**
+     * The currently logged-in user of the session.
+     */
+    private volatile User currentUser;
 
     /**
      * The stored JWT for the currently logged-in user.
      */
-    private static String jwt;
+    private volatile String jwt;
 
 
     /**
-     * Singleton constructor Auth
+     * Constructor Auth, creating a session with no user logged in
      */
-    private Auth() {
-        currentUser = null;
-        jwt = null;
+    public Auth() {
+        this.currentUser = null;
+        this.jwt = null;
     }
 
     /**
-     * Static method controls access to the singleton instance Auth
-     * @return an instance of Auth.
+     * Static method controls access to the Auth of the current session
+     * @return the Auth bound to the current thread, or the default instance if there is none.
      */
     public static Auth getInstance() {
-        if (instance == null) {
-            instance = new Auth();
+        Auth session = sessionInstance.get();
+        if (session != null) {
+            return session;
         }
-        return instance;
+
+        Auth result = instance;
+        if (result == null) {
+            synchronized (Auth.class) {
+                result = instance;
+                if (result == null) {
+                    result = new Auth();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Binds an Auth to the current thread, so that getInstance returns it until unbind is called.
+     * @param auth the session's Auth
+     */
+    public static void bind(Auth auth) {
+        sessionInstance.set(auth);
+    }
+
+    /**
+     * Removes the Auth bound to the current thread, if any.
+     */
+    public static void unbind() {
+        sessionInstance.remove();
     }
 
     public void setLoggedInUser(User loggedInUser) {
-        currentUser = loggedInUser;
+        this.currentUser = loggedInUser;
     }
 
     public void setJwt(String tempJwt) {
-        jwt = tempJwt;
+        this.jwt = tempJwt;
     }
 
     /**
      * Function logs current user out of system
      */
     public void logout() {
-        currentUser = null;
-        jwt = null;
+        this.currentUser = null;
+        this.jwt = null;
     }
 
     /**
@@ -63,7 +98,7 @@ public class Auth {
     public User getCurrentUser() {
         //FIXME: this is a privacy leak. may need to create 'public User(User user)' constructor in User
         // if we decide to fix this
-        return currentUser;
+        return this.currentUser;
     }
 
     public String getJwt(){
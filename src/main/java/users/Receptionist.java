@@ -3,6 +3,9 @@ package users;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import utils.Json;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents receptionist user type
@@ -44,10 +47,15 @@ public class Receptionist extends User {
 
     /**
      * Method to retrieve the testingSiteId a receptionist works at.
-     * @return testingSiteId of the testing site the receptionist works at.
+     * @return testingSiteId of the testing site the receptionist works at, null if they do not have one.
      */
     public String getWorkplace(){
-        return this.getAdditionalInfo().get("testingSiteId").asText();
+        JsonNode testingSiteId = this.getAdditionalInfoField("testingSiteId");
+
+        if (testingSiteId.isMissingNode() || testingSiteId.isNull()) {
+            return null;
+        }
+        return testingSiteId.asText();
     }
 
     /**
@@ -56,7 +64,12 @@ public class Receptionist extends User {
      * @return array of updates
      */
     public ArrayNode getMessageList() {
-        return this.getAdditionalInfo().withArray("messageList").deepCopy();
+        JsonNode messageList = this.getAdditionalInfoField("messageList");
+
+        if (!messageList.isArray()) {
+            return Json.createArrayNode();
+        }
+        return messageList.deepCopy();
     }
 
     /**
@@ -64,10 +77,18 @@ public class Receptionist extends User {
      * @param message message to be shown
      */
     public void addMessage(ObjectNode message){
+        addMessages(Collections.singletonList(message));
+    }
+
+    /**
+     * Adds several updates regarding bookings at the receptionist's workplace, copying the additional info once.
+     * @param messages messages to be shown, in order
+     */
+    public void addMessages(List<ObjectNode> messages) {
         ObjectNode additionalInfo = this.getAdditionalInfo();
         // messageList in additionalInfo is an ArrayNode
         ArrayNode messageList = additionalInfo.withArray("messageList");
-        messageList.add(message); // as it is not a deepcopy, additionalInfo will now contain the new message
+        messageList.addAll(messages); // as it is not a deepcopy, additionalInfo will now contain the new messages
         this.setAdditionalInfo(additionalInfo);
     }
 
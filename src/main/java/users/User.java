@@ -1,8 +1,9 @@
 package users;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import utils.Json;
 
 /**
  * Abstract class User represents a human actor in the COVID Registration System
@@ -83,7 +84,8 @@ public abstract class User {
     }
 
     /**
-     * Constructor for creation of user through JSON data
+     * Constructor for creation of user through JSON data.
+     * The user takes over the node's subtrees rather than copying them, so the node should not be reused.
      * @param userNode ObjectNode, JSON data of a user
      */
     public User(ObjectNode userNode) {
@@ -95,7 +97,7 @@ public abstract class User {
         this.isCustomer = userNode.get("isCustomer").booleanValue();
         this.isReceptionist = userNode.get("isReceptionist").booleanValue();
         this.isHealthcareWorker = userNode.get("isHealthcareWorker").booleanValue();
-        this.additionalInfo = userNode.get("additionalInfo").deepCopy();
+        this.additionalInfo = userNode.get("additionalInfo");
     }
 
     /**
@@ -170,17 +172,36 @@ public abstract class User {
         return isHealthcareWorker;
     }
 
+    /**
+     * Function returns a copy of the user's additional info, which may be edited and passed to setAdditionalInfo
+     * @return additionalInfo
+     */
     public ObjectNode getAdditionalInfo() {
         return this.additionalInfo.deepCopy();
     }
 
+    /**
+     * Function replaces the user's additional info.
+     * The stored tree is never modified in place, so the node is kept rather than copied and must not be changed
+     * by the caller afterwards.
+     * @param additionalInfo the user's new additional info
+     */
     public void setAdditionalInfo(ObjectNode additionalInfo) {
-        this.additionalInfo = additionalInfo.deepCopy();
+        this.additionalInfo = additionalInfo;
+    }
+
+    /**
+     * Function reads one field of the user's additional info without copying it. The returned node must not be
+     * modified.
+     * @param field name of the field
+     * @return the field's value, or a missing node if the user has no such field
+     */
+    protected JsonNode getAdditionalInfoField(String field) {
+        return this.additionalInfo == null ? MissingNode.getInstance() : this.additionalInfo.path(field);
     }
 
     public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode root = mapper.createObjectNode();
+        ObjectNode root = Json.createObjectNode();
 
         root.put("givenName", this.givenName);
         root.put("familyName", this.familyName);
@@ -190,7 +211,27 @@ public abstract class User {
         root.put("isHealthcareWorker", this.isHealthcareWorker);
         root.set("additionalInfo", this.additionalInfo);
         
-        return root.toString();
+        return Json.toJsonString(root);
+    }
+
+    /**
+     * Converts the user to JSON in the form the API returns it, so that it can be recreated with the JSON constructor
+     * @return user's JSON data
+     */
+    public ObjectNode toApiJson() {
+        ObjectNode root = Json.createObjectNode();
+
+        root.put("id", this.id);
+        root.put("givenName", this.givenName);
+        root.put("familyName", this.familyName);
+        root.put("userName", this.userName);
+        root.put("phoneNumber", this.phoneNumber);
+        root.put("isCustomer", this.isCustomer);
+        root.put("isReceptionist", this.isReceptionist);
+        root.put("isHealthcareWorker", this.isHealthcareWorker);
+        root.set("additionalInfo", this.additionalInfo);
+
+        return root;
     }
 }
 
@@ -1,13 +1,21 @@
 package users;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import endpoints.UserAPIEndpoint;
+import utils.Json;
+import utils.SyncEngine;
+import utils.SyncTarget;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class UserFacade {
 
-    private static UserFacade instance;
+    private static volatile UserFacade instance;
 
     private static UserFactory userFactory;
 
@@ -15,33 +23,45 @@ public class UserFacade {
 
     private static UserList userList;
 
+    /**
+     * Name the UserList is synced under.
+     */
+    private static final String syncName = "users";
+
+    /**
+     * Locks guarding each receptionist's message list, indexed by receptionist ID.
+     */
+    private final ConcurrentHashMap<String, Object> messageLocks = new ConcurrentHashMap<>();
+
     private UserFacade() {
         userFactory = new ConcreteUserFactory();
         userEndpoint = new UserAPIEndpoint();
         userList = new UserList();  //TODO: add constructor to userList
 
-        selfPopulateFromAPI();
+        // populate the userList, and keep it in sync with the API in the background
+        SyncEngine.getInstance().register(new UserSyncTarget());
     }
 
     public static UserFacade getInstance() {
-        if (instance == null) {
-            instance = new UserFacade();
+        UserFacade result = instance;
+        if (result == null) {
+            synchronized (UserFacade.class) {
+                result = instance;
+                if (result == null) {
+                    result = new UserFacade();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
     }
 
-    private void selfPopulateFromAPI() {
-        try {
-            // retrieve all bookings from the web service
-            ObjectNode[] userNodes = userEndpoint.makeGETRequest();
-
-            // for each booking found, add it to the bookingCollection
-            for (ObjectNode userNode : userNodes) {
-                userList.addUser(userFactory.createUser(userNode));
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage()); //FIXME: improve error handling here
-        }
+    /**
+     * Pulls all users from the API straight away, updating the UserList with any changes and removing users which
+     * no longer exist, so that role and workplace queries can be answered locally.
+     */
+    public void syncWithAPI() {
+        SyncEngine.getInstance().syncNow(syncName);
     }
 
     private void pushNewUserToAPI(User user) {
@@ -103,6 +123,12 @@ public class UserFacade {
 
         User currentUser = getUserByUserName(userName);
 
+        // the UserList may have come from a snapshot taken before this user was created
+        if (currentUser == null) {
+            syncWithAPI();
+            currentUser = getUserByUserName(userName);
+        }
+
         if (!Objects.equals(currentUser, null)) {
             Auth.getInstance().setLoggedInUser(currentUser);
             return currentUser;
@@ -113,49 +139,119 @@ public class UserFacade {
 
 
     /**
-     * Method to get all HealthcareWorkers from API in an ArrayList.
+     * Method to get all HealthcareWorkers in an ArrayList, from the locally synced UserList.
      * @return ArrayList<HealthcareWorker>
      */
     public ArrayList<HealthcareWorker> getHealthcareWorkers() {
-        ArrayList<HealthcareWorker> tempUserList =  new ArrayList<>();
-        try {
-            // retrieve all bookings from the web service
-            ObjectNode[] userNodes = userEndpoint.makeGETRequest();
+        ArrayList<HealthcareWorker> healthcareWorkers = new ArrayList<>();
 
-            // for each booking found, add it to the bookingCollection
-            for (ObjectNode userNode : userNodes) {
-                if (!userNode.get("isCustomer").asBoolean() && !userNode.get("isReceptionist").asBoolean()) {
-                    userList.addUser(new HealthcareWorker(userNode));
-                }
+        for (User user : userList.getUsersByRole(UserRole.HEALTHCARE_WORKER)) {
+            if (user instanceof HealthcareWorker) {
+                healthcareWorkers.add((HealthcareWorker) user);
             }
-        } catch (Exception e) {
-            System.out.println(e.getMessage()); //FIXME: improve error handling here
         }
-        return tempUserList;
+        return healthcareWorkers;
     }
 
     /**
-     * Method to get all Receptionists from API in an ArrayList.
+     * Method to get all Receptionists in an ArrayList, from the locally synced UserList.
      * @return ArrayList<Receptionist>
      */
     public ArrayList<Receptionist> getReceptionists() {
-        ArrayList<Receptionist> tempUserList =  new ArrayList<>();
-        try {
-            // retrieve all bookings from the web service
-            ObjectNode[] userNodes = userEndpoint.makeGETRequest();
+        ArrayList<Receptionist> receptionists = new ArrayList<>();
 
-            // for each booking found, add it to the bookingCollection
-            for (ObjectNode userNode : userNodes) {
-                if (!userNode.get("isCustomer").asBoolean() && userNode.get("isReceptionist").asBoolean()) {
-                    tempUserList.add(new Receptionist(userNode));
-                }
+        for (User user : userList.getUsersByRole(UserRole.RECEPTIONIST)) {
+            if (user instanceof Receptionist) {
+                receptionists.add((Receptionist) user);
+            }
+        }
+        return receptionists;
+    }
+
+    /**
+     * Method to get the Receptionists working at a given testing site.
+     * @param testingSiteId the testing site's unique ID
+     * @return ArrayList<Receptionist>
+     */
+    public ArrayList<Receptionist> getReceptionistsByWorkplace(String testingSiteId) {
+        return userList.getReceptionistsByWorkplace(testingSiteId);
+    }
+
+
+    /**
+     * Adds messages to the end of a receptionist's messageList, and updates them in a single call.
+     * The receptionist is fetched from the API at the time of the call, as other sessions and processes write the same
+     * list and the UserList may be up to a sync interval old. The change is made on a copy, under the same lock as
+     * takeMessages, and the copy then replaces the receptionist in the UserList, so messages are neither lost nor
+     * shown twice.
+     * @param receptionistId the receptionist's unique ID
+     * @param messages the messages, in order
+     */
+    public void addMessages(String receptionistId, List<ObjectNode> messages) {
+        synchronized (messageLockFor(receptionistId)) {
+            Receptionist receptionist = fetchReceptionist(receptionistId);
+
+            // the receptionist has been removed since the messages were raised
+            if (receptionist == null) {
+                return;
             }
+
+            receptionist.addMessages(messages);
+            updateUser(receptionist);
+        }
+    }
+
+    /**
+     * Removes and returns all of a receptionist's messages, under the same lock as addMessages.
+     * @param receptionistId the receptionist's unique ID
+     * @return the messages, in order, or an empty array if there are none
+     */
+    public ArrayNode takeMessages(String receptionistId) {
+        synchronized (messageLockFor(receptionistId)) {
+            Receptionist receptionist = fetchReceptionist(receptionistId);
+
+            if (receptionist == null) {
+                return Json.createArrayNode();
+            }
+
+            ArrayNode messageList = receptionist.getMessageList();
+
+            if (messageList.size() > 0) {
+                receptionist.emptyMessageList();
+                updateUser(receptionist);
+            }
+            return messageList;
+        }
+    }
+
+    /**
+     * Gets a private copy of a receptionist to change, fetched from the API so that it has the latest messageList.
+     * If the API cannot be reached, a copy of the receptionist in the UserList is used instead.
+     * @param receptionistId the receptionist's unique ID
+     * @return the copy, or null if there is no such receptionist
+     */
+    private Receptionist fetchReceptionist(String receptionistId) {
+        User user;
+
+        try {
+            user = userFactory.createUser(userEndpoint.makeGETRequestByID(receptionistId));
         } catch (Exception e) {
             System.out.println(e.getMessage()); //FIXME: improve error handling here
+
+            User cachedUser = userList.getUserById(receptionistId);
+            user = cachedUser == null ? null : userFactory.createUser(cachedUser.toApiJson().deepCopy());
         }
-        return tempUserList;
+        return user instanceof Receptionist ? (Receptionist) user : null;
     }
 
+    /**
+     * Gets the lock guarding a receptionist's message list.
+     * @param receptionistId the receptionist's unique ID
+     * @return the lock
+     */
+    private Object messageLockFor(String receptionistId) {
+        return this.messageLocks.computeIfAbsent(receptionistId, id -> new Object());
+    }
 
     /**
      * Checks whether the current user of the system is authenticated by
@@ -171,4 +267,50 @@ public class UserFacade {
             return false;
         }
     }
+
+    /**
+     * Keeps the userList in sync with the users on the API.
+     */
+    private static class UserSyncTarget implements SyncTarget<User> {
+
+        @Override
+        public String getName() {
+            return syncName;
+        }
+
+        @Override
+        public String fetch(String etag, Consumer<ObjectNode> handler) throws Exception {
+            return userEndpoint.streamGETRequestIfChanged(etag, handler);
+        }
+
+        @Override
+        public User create(ObjectNode node) {
+            return userFactory.createUser(node);
+        }
+
+        @Override
+        public String idOf(User user) {
+            return user.getId();
+        }
+
+        @Override
+        public void upsert(User user) {
+            userList.updateUser(user);
+        }
+
+        @Override
+        public void remove(String id) {
+            userList.deleteUserById(id);
+        }
+
+        @Override
+        public Collection<User> getAll() {
+            return userList.getAllUsers();
+        }
+
+        @Override
+        public ObjectNode toJson(User user) {
+            return user.toApiJson();
+        }
+    }
 }
@@ -2,19 +2,49 @@ package users;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.util.ArrayList;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Class stores a list of Users
+ * Class stores a list of Users, indexed by ID, username and role.
+ * Lookups are lock-free; changes are serialised so that the indexes always agree with each other.
  */
 public class UserList {
     /**
-     * list of users
+     * users indexed by their unique ID
      */
-    private ArrayList<User> users;
+    private ConcurrentHashMap<String, User> usersById;
+
+    /**
+     * users indexed by their username
+     */
+    private ConcurrentHashMap<String, User> usersByUserName;
+
+    /**
+     * users indexed by each role they hold, then by their unique ID
+     */
+    private ConcurrentHashMap<UserRole, ConcurrentHashMap<String, User>> usersByRole;
+
+    /**
+     * receptionists indexed by the ID of the testing site they work at, then by their unique ID
+     */
+    private ConcurrentHashMap<String, ConcurrentHashMap<String, Receptionist>> receptionistsByWorkplace;
+
+    /**
+     * the workplace each receptionist was indexed under, as receptionists may be modified in place before being
+     * updated
+     */
+    private ConcurrentHashMap<String, String> indexedWorkplaces;
 
     public UserList() {
-        this.users = new ArrayList<>();
+        this.usersById = new ConcurrentHashMap<>();
+        this.usersByUserName = new ConcurrentHashMap<>();
+        this.usersByRole = new ConcurrentHashMap<>();
+        this.receptionistsByWorkplace = new ConcurrentHashMap<>();
+        this.indexedWorkplaces = new ConcurrentHashMap<>();
+
+        for (UserRole role : UserRole.values()) {
+            this.usersByRole.put(role, new ConcurrentHashMap<>());
+        }
     }
 
     /**
@@ -22,17 +52,47 @@ public class UserList {
      * @param userNodes JSON data of list of users
      */
     public UserList(ObjectNode[] userNodes) {
-        this.users = new ArrayList<User>();
+        this();
 
         UserFactory userFactory = new ConcreteUserFactory();
 
         for (ObjectNode userNode : userNodes) {
-            users.add(userFactory.createUser(userNode));
+            addUser(userFactory.createUser(userNode));
         }
     }
 
-    public void addUser(User newUser) {
-        this.users.add(newUser);
+    /**
+     * Adds a user to the list, replacing any existing user with the same ID.
+     * @param newUser the user to be added. Users without an ID or with no role are ignored.
+     */
+    public synchronized void addUser(User newUser) {
+        if (newUser == null || newUser.getId() == null) {
+            return;
+        }
+
+        // drop the index entries of the user being replaced, in case their username or roles have changed
+        deleteUserById(newUser.getId());
+
+        this.usersById.put(newUser.getId(), newUser);
+
+        if (newUser.getUserName() != null) {
+            this.usersByUserName.put(newUser.getUserName(), newUser);
+        }
+
+        for (UserRole role : UserRole.rolesOf(newUser)) {
+            this.usersByRole.get(role).put(newUser.getId(), newUser);
+        }
+
+        if (newUser instanceof Receptionist) {
+            String workplace = ((Receptionist) newUser).getWorkplace();
+
+            if (workplace != null) {
+                this.receptionistsByWorkplace
+                        .computeIfAbsent(workplace, testingSiteId -> new ConcurrentHashMap<>())
+                        .put(newUser.getId(), (Receptionist) newUser);
+                this.indexedWorkplaces.put(newUser.getId(), workplace);
+            }
+        }
     }
 
     /**
@@ -41,14 +101,10 @@ public class UserList {
      * @return The found user. If no user is found, returns null.
      */
     public User getUserByUserName(String userName) {
-        User foundUser = null;
-
-        for (User user : this.users) {
-            if (Objects.equals(user.getUserName(), userName)) {
-                foundUser = user;
-            }
+        if (userName == null) {
+            return null;
         }
-        return foundUser;
+        return this.usersByUserName.get(userName);
     }
 
     /**
@@ -57,34 +113,88 @@ public class UserList {
      * @return true if user exists, false otherwise
      */
     public Boolean checkUserExists(String id) {
+        return id != null && this.usersById.containsKey(id);
+    }
 
-        for (User user : this.users) {
-            if (Objects.equals(user.getId(), id)) {
-                return true;
-            }
+    /**
+     * Gets every user holding a given role.
+     * @param role the role
+     * @return list of users with that role
+     */
+    public ArrayList<User> getUsersByRole(UserRole role) {
+        return new ArrayList<>(this.usersByRole.get(role).values());
+    }
+
+    /**
+     * Gets every receptionist working at a given testing site.
+     * @param testingSiteId the testing site's unique ID
+     * @return list of receptionists at that site
+     */
+    public ArrayList<Receptionist> getReceptionistsByWorkplace(String testingSiteId) {
+        if (testingSiteId == null) {
+            return new ArrayList<>();
         }
-        return false;
+
+        ConcurrentHashMap<String, Receptionist> siteReceptionists = this.receptionistsByWorkplace.get(testingSiteId);
+
+        if (siteReceptionists == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(siteReceptionists.values());
+    }
+
+    /**
+     * Gets every user in the list.
+     * @return list of all users
+     */
+    public ArrayList<User> getAllUsers() {
+        return new ArrayList<>(this.usersById.values());
     }
 
     public void updateUser(User user) {
-        // delete the old user, if there is one, and then add the new user
-        deleteUserById(user.getId());
+        // adding replaces the old user, if there is one
         addUser(user);
     }
 
-    public boolean deleteUserById(String id) {
-        User oldUser = getUserById(id);
-        return users.remove(oldUser);
-    }
+    public synchronized boolean deleteUserById(String id) {
+        if (id == null) {
+            return false;
+        }
 
-    private User getUserById(String id) {
-        User foundUser = null;
+        User oldUser = this.usersById.remove(id);
 
-        for (User user : this.users) {
-            if (Objects.equals(user.getId(), id)) {
-                foundUser = user;
+        if (oldUser == null) {
+            return false;
+        }
+
+        if (oldUser.getUserName() != null) {
+            this.usersByUserName.remove(oldUser.getUserName(), oldUser);
+        }
+
+        for (ConcurrentHashMap<String, User> roleUsers : this.usersByRole.values()) {
+            roleUsers.remove(id, oldUser);
+        }
+
+        String workplace = this.indexedWorkplaces.remove(id);
+
+        if (workplace != null) {
+            ConcurrentHashMap<String, Receptionist> siteReceptionists = this.receptionistsByWorkplace.get(workplace);
+            if (siteReceptionists != null) {
+                siteReceptionists.remove(id);
             }
         }
-        return foundUser;
+        return true;
+    }
+
+    /**
+     * Searches the UserList for a given user by ID
+     * @param id user's unique ID
+     * @return The found user. If no user is found, returns null.
+     */
+    public User getUserById(String id) {
+        if (id == null) {
+            return null;
+        }
+        return this.usersById.get(id);
     }
 }
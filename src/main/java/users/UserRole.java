@@ -0,0 +1,41 @@
+package users;
+
+import java.util.ArrayList;
+
+/**
+ * Enum to represent the roles a User can hold in the system.
+ */
+public enum UserRole {
+    /**
+     * User is a customer/patient.
+     */
+    CUSTOMER,
+    /**
+     * User is a receptionist at a testing site.
+     */
+    RECEPTIONIST,
+    /**
+     * User is a healthcare worker.
+     */
+    HEALTHCARE_WORKER;
+
+    /**
+     * Gets every role held by a user. A user may hold more than one role.
+     * @param user the user
+     * @return list of the user's roles
+     */
+    public static ArrayList<UserRole> rolesOf(User user) {
+        ArrayList<UserRole> roles = new ArrayList<>();
+
+        if (Boolean.TRUE.equals(user.getIsCustomer())) {
+            roles.add(CUSTOMER);
+        }
+        if (Boolean.TRUE.equals(user.getIsReceptionist())) {
+            roles.add(RECEPTIONIST);
+        }
+        if (Boolean.TRUE.equals(user.getIsHealthcareWorker())) {
+            roles.add(HEALTHCARE_WORKER);
+        }
+        return roles;
+    }
+}
@@ -1,10 +1,13 @@
 package utils;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.Objects;
 import java.util.Scanner;
 
 /**
- * Utility class for displaying I/O to the user via the command line.
+ * Utility class for displaying I/O to the user via the command line, or any other pair of streams such as a network
+ * connection.
  */
 public class Display {
 
@@ -14,28 +17,46 @@ public class Display {
     Scanner scanner;
 
     /**
-     * Constructor.
+     * Stream output is printed to.
+     */
+    PrintStream out;
+
+    /**
+     * Constructor, displaying I/O via standard input and output.
      */
     public Display() {
-        this.scanner = new Scanner(System.in);
+        this(System.in, System.out);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param in Stream user input is read from.
+     * @param out Stream output is printed to.
+     */
+    public Display(InputStream in, PrintStream out) {
+        this.scanner = new Scanner(in);
+        this.out = out;
     }
 
     /**
-     * Prints a line to standard output with a newline character.
+     * Prints a line to the output stream with a newline character.
      *
      * @param str String to be printed.
      */
     public void printLine(String str) {
-        System.out.println(str);
+        out.println(str);
     }
 
     /**
-     * Prints a line to standard output with no newline character.
+     * Prints a line to the output stream with no newline character.
      *
      * @param str String to be printed.
      */
     public void print(String str) {
-        System.out.print(str);
+        out.print(str);
+        // prompts are printed without a newline, and must reach the user before their input is read
+        out.flush();
     }
 
     /**
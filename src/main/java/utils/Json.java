@@ -0,0 +1,97 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Utility class holding the single ObjectMapper used throughout the application.
+ *
+ * ObjectMappers are expensive to create and each keeps its own serializer caches, but are thread-safe once
+ * configured, so one instance is shared. ObjectReaders and ObjectWriters are immutable and are built once per type,
+ * then reused.
+ */
+public class Json {
+
+    /**
+     * The shared ObjectMapper. It must not be reconfigured after start-up.
+     */
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * ObjectReaders built so far, indexed by the type they read.
+     */
+    private static final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * ObjectWriters built so far, indexed by the type they write.
+     */
+    private static final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the shared ObjectMapper.
+     *
+     * @return The application's ObjectMapper.
+     */
+    public static ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Gets the ObjectReader for a type, building it the first time it is asked for.
+     *
+     * @param type The type to be read.
+     * @return An ObjectReader for type.
+     */
+    public static ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    /**
+     * Gets the ObjectWriter for a type, building it the first time it is asked for.
+     *
+     * @param type The type to be written.
+     * @return An ObjectWriter for type.
+     */
+    public static ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+
+    /**
+     * Creates an empty ObjectNode.
+     *
+     * @return A new ObjectNode.
+     */
+    public static ObjectNode createObjectNode() {
+        return mapper.createObjectNode();
+    }
+
+    /**
+     * Creates an empty ArrayNode.
+     *
+     * @return A new ArrayNode.
+     */
+    public static ArrayNode createArrayNode() {
+        return mapper.createArrayNode();
+    }
+
+    /**
+     * Converts a JSON tree to a string.
+     *
+     * @param node The JSON tree to be written.
+     * @return The JSON text of node.
+     */
+    public static String toJsonString(JsonNode node) {
+        try {
+            return writerFor(JsonNode.class).writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            // a tree built in memory can always be written, so this should never happen
+            return node.toString();
+        }
+    }
+}
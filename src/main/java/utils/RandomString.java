@@ -1,6 +1,6 @@
 package utils;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Utility class for random string generation.
@@ -8,23 +8,35 @@ import java.util.Random;
 public class RandomString {
 
     /**
-     * Class creates a random string of set length
+     * Characters used by main.
+     */
+    private static final String digits = "1234567890";
+
+    /**
+     * Class creates a random string of digits of set length
      *
      * @param length size of string
      * @return random string of size length
      */
     public static String main(int length) {
-        String characters = "1234567890";
+        return fromAlphabet(digits, length);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        Random ran = new Random();
+    /**
+     * Creates a random string of set length from the given characters
+     *
+     * @param alphabet characters the string is made of
+     * @param length size of string
+     * @return random string of size length
+     */
+    public static String fromAlphabet(String alphabet, int length) {
+        // each thread has its own generator, so concurrent sessions do not contend for one
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] characters = new char[length];
 
         for (int i = 0; i < length; i++) {
-
-            int index = ran.nextInt(characters.length());
-            Character ranChar = characters.charAt(index);
-            sb.append(ranChar);
+            characters[i] = alphabet.charAt(random.nextInt(alphabet.length()));
         }
-        return sb.toString();
+        return new String(characters);
     }
 }
@@ -0,0 +1,66 @@
+package utils;
+
+/**
+ * Utility class for reading tunable settings from the environment, falling back to a default value when a setting
+ * is missing or malformed.
+ */
+public class Settings {
+
+    /**
+     * Reads an integer setting.
+     *
+     * @param name The name of the environment variable.
+     * @param defaultValue The value to use if the variable is unset or not a valid integer.
+     * @return The configured value, or defaultValue.
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a long setting.
+     *
+     * @param name The name of the environment variable.
+     * @param defaultValue The value to use if the variable is unset or not a valid long.
+     * @return The configured value, or defaultValue.
+     */
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a string setting.
+     *
+     * @param name The name of the environment variable.
+     * @param defaultValue The value to use if the variable is unset or empty.
+     * @return The configured value, or defaultValue.
+     */
+    public static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+}
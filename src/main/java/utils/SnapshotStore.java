@@ -0,0 +1,276 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Singleton class which keeps local snapshots of the records downloaded from the API, so that the application can
+ * start from disk and only apply what has changed since.
+ *
+ * Each snapshot is a gzipped JSON file holding records in the form the API returns them, each with the version it
+ * had when it was downloaded. Snapshots hold users' personal details and bookings unencrypted, so they are only kept
+ * when SNAPSHOT_ENABLED is set to 1. They are kept in SNAPSHOT_DIR (~/.covid-registration by default), which is
+ * created readable by its owner only, as is each snapshot, on filesystems with POSIX permissions.
+ */
+public class SnapshotStore {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static SnapshotStore instance;
+
+    /**
+     * Version of the file layout. Snapshots written with a different layout are ignored.
+     */
+    private static final int formatVersion = 1;
+
+    /**
+     * Prefix of versions which are content hashes rather than timestamps.
+     */
+    private static final String hashPrefix = "#";
+
+    /**
+     * Permissions of the snapshot directory, which only its owner may use.
+     */
+    private static final Set<PosixFilePermission> directoryPermissions = PosixFilePermissions.fromString("rwx------");
+
+    /**
+     * Permissions of each snapshot, which only its owner may read.
+     */
+    private static final Set<PosixFilePermission> filePermissions = PosixFilePermissions.fromString("rw-------");
+
+    /**
+     * ObjectReader used for reading records.
+     */
+    private static final ObjectReader treeReader = Json.readerFor(JsonNode.class);
+
+    /**
+     * Directory the snapshots are kept in, null if snapshots are turned off.
+     */
+    private final Path directory;
+
+    /**
+     * Held while a snapshot is being written, so that two writes of the same snapshot do not share a temporary file.
+     */
+    private final ReentrantLock saveLock;
+
+    /**
+     * Private constructor.
+     */
+    private SnapshotStore() {
+        this.saveLock = new ReentrantLock();
+
+        if (Settings.getInt("SNAPSHOT_ENABLED", 0) == 0) {
+            this.directory = null;
+        } else {
+            String defaultDirectory = Paths.get(System.getProperty("user.home"), ".covid-registration").toString();
+            this.directory = Paths.get(Settings.getString("SNAPSHOT_DIR", defaultDirectory));
+        }
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of SnapshotStore.
+     */
+    public static synchronized SnapshotStore getInstance() {
+        if (instance == null) {
+            instance = new SnapshotStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the version of a record downloaded from the API. This is its updatedAt timestamp where it has one, and
+     * a hash of its contents otherwise.
+     *
+     * @param node The record, as returned by the API.
+     * @return The record's version.
+     */
+    public static String versionOf(JsonNode node) {
+        JsonNode updatedAt = node.get("updatedAt");
+
+        if (updatedAt != null && updatedAt.isTextual()) {
+            return updatedAt.textValue();
+        }
+        return hashPrefix + Integer.toHexString(node.hashCode());
+    }
+
+    /**
+     * Reads a snapshot, passing each record to handler as it is read.
+     *
+     * @param name The snapshot's name, i.e. 'bookings'.
+     * @param handler Receives each record's version and JSON data. The handler may keep the JSON data.
+     * @return true if the snapshot was read, false if there is no usable snapshot.
+     */
+    public boolean load(String name, BiConsumer<String, ObjectNode> handler) {
+        Path file = fileFor(name);
+
+        if (file == null || !Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             JsonParser parser = Json.getMapper().getFactory().createParser(in)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+
+            // the format version is written first, so that an old snapshot is rejected before any record is read
+            if (parser.nextToken() != JsonToken.FIELD_NAME || !parser.getCurrentName().equals("formatVersion")
+                    || parser.nextToken() != JsonToken.VALUE_NUMBER_INT || parser.getIntValue() != formatVersion) {
+                return false;
+            }
+
+            if (parser.nextToken() != JsonToken.FIELD_NAME || !parser.getCurrentName().equals("records")
+                    || parser.nextToken() != JsonToken.START_ARRAY) {
+                return false;
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonNode record = treeReader.readTree(parser);
+                JsonNode data = record.get("data");
+
+                if (data instanceof ObjectNode) {
+                    handler.accept(record.path("version").asText(null), (ObjectNode) data);
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            System.out.println(e.getMessage()); //FIXME: improve error handling here
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot, replacing any previous one. The new snapshot is written to a temporary file first, so a
+     * failed write leaves the previous snapshot in place.
+     *
+     * @param name The snapshot's name, i.e. 'bookings'.
+     * @param items The records to be written.
+     * @param versionOf Gets the version of a record, as returned by versionOf when it was downloaded.
+     * @param toJson Converts a record to JSON in the form the API returns it.
+     * @param <T> The type of record.
+     */
+    public <T> void save(String name, Collection<T> items, Function<T, String> versionOf,
+                         Function<T, ObjectNode> toJson) {
+        Path file = fileFor(name);
+
+        if (file == null) {
+            return;
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        this.saveLock.lock();
+        try {
+            createPrivateDirectory(this.directory);
+            createPrivateFile(tempFile);
+
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+                 JsonGenerator generator = Json.getMapper().getFactory().createGenerator(out)) {
+
+                generator.writeStartObject();
+                generator.writeNumberField("formatVersion", formatVersion);
+                generator.writeArrayFieldStart("records");
+
+                for (T item : items) {
+                    generator.writeStartObject();
+                    generator.writeStringField("version", versionOf.apply(item));
+                    generator.writeFieldName("data");
+                    generator.writeTree(toJson.apply(item));
+                    generator.writeEndObject();
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.out.println(e.getMessage()); //FIXME: improve error handling here
+        } finally {
+            this.saveLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a directory, if it does not exist, and makes it accessible to its owner only.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory cannot be created or its permissions cannot be set.
+     */
+    private static void createPrivateDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        // a directory left by an earlier version may have been created with the default permissions
+        if (supportsPosix(directory)) {
+            Files.setPosixFilePermissions(directory, directoryPermissions);
+        }
+    }
+
+    /**
+     * Creates an empty file, replacing any existing one, which only its owner may read.
+     * The permissions are set as the file is created, so the records are never written to a file others can read.
+     *
+     * @param file The file.
+     * @throws IOException If the file cannot be created.
+     */
+    private static void createPrivateFile(Path file) throws IOException {
+        Files.deleteIfExists(file);
+
+        if (supportsPosix(file.getParent())) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(filePermissions));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    /**
+     * Checks whether the filesystem a path is on has POSIX permissions.
+     *
+     * @param path The path.
+     * @return true if POSIX permissions can be set, false otherwise.
+     * @throws IOException If the filesystem cannot be read.
+     */
+    private static boolean supportsPosix(Path path) throws IOException {
+        return Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class);
+    }
+
+    /**
+     * Gets the file a snapshot is kept in.
+     *
+     * @param name The snapshot's name.
+     * @return The snapshot's file, or null if snapshots are turned off.
+     */
+    private Path fileFor(String name) {
+        if (this.directory == null) {
+            return null;
+        }
+        return this.directory.resolve(name + ".json.gz");
+    }
+}
@@ -0,0 +1,258 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Singleton class which keeps local collections of records in sync with the API.
+ *
+ * Each registered SyncTarget starts from its local snapshot if snapshots are enabled (see SnapshotStore), and is then
+ * synced every SYNC_INTERVAL_SECONDS (300 by default, 0 to only sync on request). A sync only rebuilds records whose
+ * version (updatedAt, or a content hash where there is none) differs from the one last applied. The API can neither
+ * filter nor order records by updatedAt, so unless it answers a conditional request with 304 Not Modified, each sync
+ * downloads the target's whole table, and the snapshot is rewritten whenever a record has changed. The interval is
+ * therefore a trade-off between freshness and that cost, which is paid by every running process; paths which need a
+ * single record to be current fetch it directly instead (i.e. BookingFacade.awaitBooking). Deletions are found by
+ * diffing the IDs returned against those known.
+ */
+public class SyncEngine {
+
+    /**
+     * Singleton instance of this class.
+     */
+    private static SyncEngine instance;
+
+    /**
+     * Seconds between syncs of each target, 0 if targets are only synced on request.
+     */
+    private final long intervalSeconds;
+
+    /**
+     * Runs the periodic syncs.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Sync state of each registered target, indexed by name.
+     */
+    private final ConcurrentHashMap<String, TargetState<?>> targets;
+
+    /**
+     * Private constructor.
+     */
+    private SyncEngine() {
+        this.intervalSeconds = Math.max(0, Settings.getLong("SYNC_INTERVAL_SECONDS", 300));
+        this.targets = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Singleton instance method.
+     *
+     * @return The singleton instance of SyncEngine.
+     */
+    public static synchronized SyncEngine getInstance() {
+        if (instance == null) {
+            instance = new SyncEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a target, populating it from its snapshot and scheduling its syncs. If there is no snapshot, the
+     * target is synced on the calling thread first, so that it is populated when this method returns.
+     *
+     * @param target The target to be kept in sync.
+     * @param <T> The type of record held by the target.
+     */
+    public <T> void register(SyncTarget<T> target) {
+        TargetState<T> state = new TargetState<>(target);
+        this.targets.put(target.getName(), state);
+
+        boolean loadedSnapshot = state.loadSnapshot();
+
+        if (!loadedSnapshot) {
+            state.sync();
+        }
+
+        if (this.intervalSeconds > 0) {
+            this.scheduler.scheduleWithFixedDelay(state::sync, loadedSnapshot ? 0 : this.intervalSeconds,
+                    this.intervalSeconds, TimeUnit.SECONDS);
+        } else if (loadedSnapshot) {
+            // catch up with the API once, as the snapshot may be out of date
+            this.scheduler.execute(state::sync);
+        }
+    }
+
+    /**
+     * Syncs a target with the API on the calling thread. Waits for any sync of the target already running.
+     *
+     * @param name The target's name.
+     * @return true if the sync succeeded, false if it failed or there is no such target.
+     */
+    public boolean syncNow(String name) {
+        TargetState<?> state = this.targets.get(name);
+        return state != null && state.sync();
+    }
+
+    /**
+     * Sync state of a single target.
+     *
+     * @param <T> The type of record held by the target.
+     */
+    private static class TargetState<T> {
+
+        /**
+         * The target being kept in sync.
+         */
+        private final SyncTarget<T> target;
+
+        /**
+         * The version of each record as last applied, indexed by record ID.
+         */
+        private final ConcurrentHashMap<String, String> versions;
+
+        /**
+         * The ETag of the last fetch, null if there was none.
+         */
+        private String etag;
+
+        /**
+         * Held while the target is being populated or synced. A lock is used rather than synchronized, as syncs
+         * block on the network and sessions on virtual threads must not pin their carrier thread while waiting.
+         */
+        private final ReentrantLock lock;
+
+        /**
+         * Constructor.
+         *
+         * @param target The target being kept in sync.
+         */
+        private TargetState(SyncTarget<T> target) {
+            this.target = target;
+            this.versions = new ConcurrentHashMap<>();
+            this.lock = new ReentrantLock();
+        }
+
+        /**
+         * Populates the target from its snapshot.
+         *
+         * @return true if the snapshot was loaded, false if there is none.
+         */
+        private boolean loadSnapshot() {
+            this.lock.lock();
+            try {
+                return SnapshotStore.getInstance().load(this.target.getName(), (version, node) -> {
+                    T record = this.target.create(node);
+
+                    if (record != null) {
+                        this.target.upsert(record);
+                        recordVersion(this.target.idOf(record), version);
+                    }
+                });
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Fetches the records from the API and applies those which have changed, removes those which no longer
+         * exist, and saves a new snapshot if anything changed.
+         *
+         * @return true if the sync succeeded, false otherwise.
+         */
+        private boolean sync() {
+            this.lock.lock();
+            try {
+                // records added locally since the last sync are not yet known, and must not be removed
+                HashSet<String> knownIds = new HashSet<>(this.versions.keySet());
+                HashSet<String> foundIds = new HashSet<>();
+                int[] changed = {0};
+
+                String previousEtag = this.etag;
+
+                this.etag = this.target.fetch(previousEtag, node -> {
+                    String id = node.path("id").asText();
+                    String version = SnapshotStore.versionOf(node);
+                    foundIds.add(id);
+
+                    if (version.equals(this.versions.get(id))) {
+                        return;
+                    }
+
+                    T record = this.target.create(node);
+
+                    if (record != null) {
+                        this.target.upsert(record);
+                        recordVersion(id, version);
+                        changed[0]++;
+                    }
+                });
+
+                // nothing is streamed when the API reports the records are unchanged, so there is nothing to diff
+                boolean unchanged = this.etag != null && this.etag.equals(previousEtag) && foundIds.isEmpty();
+
+                if (!unchanged) {
+                    // remove any records which have been deleted from the web service
+                    knownIds.removeAll(foundIds);
+                    for (String id : knownIds) {
+                        this.target.remove(id);
+                        this.versions.remove(id);
+                        changed[0]++;
+                    }
+                }
+
+                if (changed[0] > 0) {
+                    saveSnapshot();
+                }
+                return true;
+            } catch (Exception e) {
+                System.out.println(e.getMessage()); //FIXME: improve error handling here
+                return false;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Writes the records downloaded from the API to the target's snapshot.
+         */
+        private void saveSnapshot() {
+            ArrayList<T> downloadedRecords = new ArrayList<>();
+
+            for (T record : this.target.getAll()) {
+                String id = this.target.idOf(record);
+
+                if (id != null && this.versions.containsKey(id)) {
+                    downloadedRecords.add(record);
+                }
+            }
+
+            SnapshotStore.getInstance().save(this.target.getName(), downloadedRecords,
+                    record -> this.versions.get(this.target.idOf(record)), this.target::toJson);
+        }
+
+        /**
+         * Records the version of an applied record.
+         *
+         * @param id The record's unique ID.
+         * @param version The record's version.
+         */
+        private void recordVersion(String id, String version) {
+            if (id == null || version == null) {
+                return;
+            }
+
+            this.versions.put(id, version);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package utils;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Interface for a local collection of records which is kept in sync with the API by the SyncEngine.
+ *
+ * @param <T> The type of record held in the collection.
+ */
+public interface SyncTarget<T> {
+
+    /**
+     * Gets the name of the records, used for their snapshot and sync thread, i.e. 'bookings'.
+     *
+     * @return The records' name.
+     */
+    String getName();
+
+    /**
+     * Fetches the records from the API, passing each to handler as it is read. Records may be skipped entirely if
+     * the API reports that none have changed since the response with the given ETag.
+     *
+     * @param etag The ETag of the previous fetch, or null to fetch all records.
+     * @param handler Receives each record, in the form the API returns it.
+     * @return The ETag of the current records, which equals etag if they are unchanged, or null if there is none.
+     * @throws Exception If the records could not be fetched.
+     */
+    String fetch(String etag, Consumer<ObjectNode> handler) throws Exception;
+
+    /**
+     * Creates a record from JSON data in the form the API returns it. The record may keep the node.
+     *
+     * @param node The record's JSON data.
+     * @return The created record, or null if the data does not describe a record of this type.
+     */
+    T create(ObjectNode node);
+
+    /**
+     * Gets the unique ID of a record.
+     *
+     * @param record The record.
+     * @return The record's ID.
+     */
+    String idOf(T record);
+
+    /**
+     * Adds a record to the local collection, replacing any record with the same ID.
+     *
+     * @param record The record to be added.
+     */
+    void upsert(T record);
+
+    /**
+     * Removes a record from the local collection.
+     *
+     * @param id The record's unique ID.
+     */
+    void remove(String id);
+
+    /**
+     * Gets every record in the local collection.
+     *
+     * @return A copy of the local collection.
+     */
+    Collection<T> getAll();
+
+    /**
+     * Converts a record to JSON in the form the API returns it, so that it can be recreated with create.
+     *
+     * @param record The record.
+     * @return The record's JSON data.
+     */
+    ObjectNode toJson(T record);
+}
@@ -0,0 +1,181 @@
+package utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Issues random tokens, such as booking PINs, which are guaranteed not to clash with any token still in use.
+ *
+ * The allocator keeps a live index of the tokens in use, with the number of holders of each. Issuing a token claims
+ * it atomically, so tokens can be issued from many threads at once. Tokens are compared case-insensitively, as they
+ * are looked up case-insensitively.
+ *
+ * Tokens start at the given length, which only offers alphabet size ^ length tokens (a million for 6 digits). Once
+ * half of the tokens of the current length are in use, new tokens are made one character longer, up to a maximum
+ * length, so that a free token is still found within a few tries. Tokens of different lengths never clash, so tokens
+ * already issued stay valid. Only when every length up to the maximum is full does issuing a token fail.
+ */
+public class TokenAllocator {
+
+    /**
+     * Number of random tokens tried before giving up, which only happens when almost every token is in use.
+     */
+    private static final int maxAttempts = 64;
+
+    /**
+     * Share of the tokens of the current length which may be in use before new tokens are made longer.
+     */
+    private static final double maxOccupancy = 0.5;
+
+    /**
+     * Characters tokens are made of.
+     */
+    private final String alphabet;
+
+    /**
+     * Number of characters in the longest tokens which may be issued.
+     */
+    private final int maxLength;
+
+    /**
+     * Number of characters in the tokens being issued, which only ever grows.
+     */
+    private final AtomicInteger length;
+
+    /**
+     * Number of holders of each token in use, indexed by the lower case token. Tokens which have been issued but not
+     * yet registered by a holder have no holders.
+     */
+    private final ConcurrentHashMap<String, Integer> liveTokens;
+
+    /**
+     * Constructor for tokens of a fixed length.
+     *
+     * @param alphabet Characters tokens are made of.
+     * @param length Number of characters in each token.
+     */
+    public TokenAllocator(String alphabet, int length) {
+        this(alphabet, length, length);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param alphabet Characters tokens are made of.
+     * @param length Number of characters in the first tokens issued.
+     * @param maxLength Number of characters tokens may grow to as the shorter ones fill up.
+     */
+    public TokenAllocator(String alphabet, int length, int maxLength) {
+        if (alphabet.isEmpty() || length < 1 || maxLength < length) {
+            throw new IllegalArgumentException("Tokens need a non-empty alphabet, a positive length and a maximum "
+                    + "length no shorter than it.");
+        }
+
+        this.alphabet = alphabet;
+        this.length = new AtomicInteger(length);
+        this.maxLength = maxLength;
+        this.liveTokens = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Issues a token which is not in use, reserving it until it is registered or released. The token is made longer
+     * than the current length if too many tokens of that length are in use.
+     *
+     * @return The token.
+     * @throws IllegalStateException If every token up to the maximum length is in use, or so nearly so that no unused
+     *                               one could be found.
+     */
+    public String allocate() {
+        while (true) {
+            int tokenLength = this.length.get();
+
+            // grow before the tokens run out, as each try is less likely to find a free token the fuller they are
+            if (tokenLength < this.maxLength && this.liveTokens.size() >= capacity(tokenLength) * maxOccupancy) {
+                this.length.compareAndSet(tokenLength, tokenLength + 1);
+                continue;
+            }
+
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                String token = RandomString.fromAlphabet(this.alphabet, tokenLength);
+
+                if (this.liveTokens.putIfAbsent(normalise(token), 0) == null) {
+                    return token;
+                }
+            }
+
+            if (tokenLength >= this.maxLength) {
+                throw new IllegalStateException("No unused token could be found: " + this.liveTokens.size()
+                        + " tokens are in use, and tokens are already at their maximum length of " + this.maxLength
+                        + " characters. Raise the maximum token length to issue more.");
+            }
+            this.length.compareAndSet(tokenLength, tokenLength + 1);
+        }
+    }
+
+    /**
+     * Gets the number of characters in the tokens being issued.
+     *
+     * @return The current token length.
+     */
+    public int getLength() {
+        return this.length.get();
+    }
+
+    /**
+     * Records that a token is held, whether it was issued by this allocator or elsewhere.
+     *
+     * @param token The token.
+     */
+    public void register(String token) {
+        this.liveTokens.merge(normalise(token), 1, Integer::sum);
+    }
+
+    /**
+     * Records that a holder no longer holds a token, or that a reserved token will not be used. The token can be
+     * issued again once it has no holders.
+     *
+     * @param token The token.
+     */
+    public void release(String token) {
+        this.liveTokens.computeIfPresent(normalise(token), (liveToken, holders) -> holders <= 1 ? null : holders - 1);
+    }
+
+    /**
+     * Checks whether a token is in use or reserved.
+     *
+     * @param token The token.
+     * @return true if the token cannot be issued, false otherwise.
+     */
+    public boolean isLive(String token) {
+        return this.liveTokens.containsKey(normalise(token));
+    }
+
+    /**
+     * Gets the number of tokens in use or reserved.
+     *
+     * @return The number of live tokens.
+     */
+    public int getLiveCount() {
+        return this.liveTokens.size();
+    }
+
+    /**
+     * Gets the number of different tokens of a length.
+     *
+     * @param tokenLength The number of characters in each token.
+     * @return The number of tokens, which may be rounded for very long tokens.
+     */
+    private double capacity(int tokenLength) {
+        return Math.pow(this.alphabet.length(), tokenLength);
+    }
+
+    /**
+     * Converts a token to the form it is indexed by.
+     *
+     * @param token The token.
+     * @return The lower case token.
+     */
+    private static String normalise(String token) {
+        return token.toLowerCase();
+    }
+}
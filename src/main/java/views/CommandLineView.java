@@ -2,7 +2,10 @@ package views;
 
 import COVIDbooking.Booking;
 import COVIDtestingsites.FacilityTestingSite;
+import COVIDtestingsites.TestingSiteFacade;
 import utils.Display;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 
 public class CommandLineView implements View {
@@ -12,6 +15,15 @@ public class CommandLineView implements View {
         this.display = new Display();
     }
 
+    /**
+     * Constructor for a view which reads and prints to the given streams rather than the command line
+     * @param in stream user input is read from
+     * @param out stream output is printed to
+     */
+    public CommandLineView(InputStream in, PrintStream out){
+        this.display = new Display(in, out);
+    }
+
     @Override
     public Integer createSubMenu(String[] menuItems) {
         display.printLine("\n" + menuItems[0] + ":");
@@ -88,6 +100,8 @@ public class CommandLineView implements View {
         output += "websiteURL: " + testingSite.getWebsiteUrl() + "\n";
         output += "Phone Number: " + testingSite.getPhoneNumber() + "\n";
         output += "Address: " + testingSite.getAddress().toJson().toString() + "\n";
+        long waitMinutes = TestingSiteFacade.getInstance().getEstimatedWaitMinutes(testingSite.getId());
+        output += "Estimated wait: " + waitMinutes + " minutes\n";
         output += "Additional Info: " + testingSite.getAdditionalInfo().toString() + "\n";
         displayString("---Testing Site---\n" + output);
     }